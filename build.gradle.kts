@@ -5,6 +5,8 @@ plugins {
 // Common Configure
 val zxingVersion       = "3.3.3"
 val lombokVersion      = "1.18.4"
+val jmhVersion         = "1.21"
+val junitVersion       = "4.12"
 val javaVersion        = JavaVersion.VERSION_1_8
 
 // 项目信息
@@ -22,6 +24,14 @@ tasks.withType<JavaCompile> {
     options.encoding = "UTF-8"
 }
 
+// JMH 基准测试
+val jmh by sourceSets.creating {
+    compileClasspath += sourceSets["main"].output
+    runtimeClasspath += sourceSets["main"].output
+}
+configurations["jmhImplementation"].extendsFrom(configurations["implementation"])
+configurations["jmhRuntimeOnly"].extendsFrom(configurations["runtimeOnly"])
+
 // 仓库配置
 repositories {
     jcenter()
@@ -33,3 +43,30 @@ dependencies {
     annotationProcessor     ("org.projectlombok:lombok:$lombokVersion")
     compileOnly             ("org.projectlombok:lombok:$lombokVersion")
 }
+
+// 测试依赖
+dependencies {
+    testImplementation      ("junit:junit:$junitVersion")
+}
+
+// 基准测试依赖
+dependencies {
+    "jmhImplementation"     ("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+}
+
+// 运行基准测试，如: gradle jmh -Pjmh.include=RenderBenchmark.toPng -Pjmh.params=version=40
+// 同时输出吞吐量、延迟分位数与每次操作的内存分配量(GC profiler)，结果保存在 build/reports/jmh 中
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Run JMH benchmarks."
+    classpath = jmh.runtimeClasspath
+    main = "org.openjdk.jmh.Main"
+
+    val resultFile = file("$buildDir/reports/jmh/results.json")
+    doFirst { resultFile.parentFile.mkdirs() }
+
+    args("-prof", "gc", "-rf", "json", "-rff", resultFile.absolutePath)
+    project.findProperty("jmh.params")?.toString()?.split(';')?.forEach { args("-p", it) }
+    project.findProperty("jmh.include")?.let { args(it.toString()) }
+}
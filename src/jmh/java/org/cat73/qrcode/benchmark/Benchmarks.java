@@ -0,0 +1,78 @@
+package org.cat73.qrcode.benchmark;
+
+import org.cat73.qrcode.QRCode;
+import org.cat73.qrcode.builder.QRCodeBuilder;
+import org.cat73.qrcode.style.IQRCodeStyle;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 基准测试的公共工具类
+ */
+final class Benchmarks {
+    private Benchmarks() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 测试用的二维码内容，需要能放入 1-H 的二维码中
+     */
+    static final String CONTENT = "cat73";
+
+    /**
+     * 构造一个测试用的二维码 Builder
+     * @param version QRVersion
+     * @param errorCorrection 纠错级别(L / M / Q / H)
+     * @return 二维码 Builder 的实例
+     */
+    static QRCodeBuilder builder(int version, String errorCorrection) {
+        QRCodeBuilder builder = QRCode.content(CONTENT).qrVersion(version);
+        switch (errorCorrection) {
+            case "L": return builder.lowErrorCorrection();
+            case "M": return builder.mediumErrorCorrection();
+            case "Q": return builder.quartileErrorCorrection();
+            case "H": return builder.highErrorCorrection();
+            default: throw new IllegalArgumentException("errorCorrection: " + errorCorrection);
+        }
+    }
+
+    /**
+     * 根据名称获取测试用的样式
+     * @param name 样式的名称(DEFAULT / 01 ~ 11 / ALL / IMG)
+     * @return 样式
+     */
+    static IQRCodeStyle style(String name) {
+        switch (name) {
+            case "DEFAULT": return QRCode.STYLE_DEFAULT;
+            case "01": return QRCode.STYLE_01;
+            case "02": return QRCode.STYLE_02;
+            case "03": return QRCode.STYLE_03;
+            case "04": return QRCode.STYLE_04;
+            case "05": return QRCode.STYLE_05;
+            case "06": return QRCode.STYLE_06;
+            case "07": return QRCode.STYLE_07;
+            case "08": return QRCode.STYLE_08;
+            case "09": return QRCode.STYLE_09;
+            case "10": return QRCode.STYLE_10;
+            case "11": return QRCode.STYLE_11;
+            case "ALL": return QRCode.STYLE_ALL;
+            case "IMG": return QRCode.imgStyleBuilder().img(Benchmarks.gradient(256)).build();
+            default: throw new IllegalArgumentException("style: " + name);
+        }
+    }
+
+    /**
+     * 生成一张渐变色的图片，用作 ImgQRCodeStyle 的背景图
+     * @param size 图片的宽高
+     * @return 图片
+     */
+    private static BufferedImage gradient(int size) {
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                img.setRGB(x, y, ((x * 255 / size) << 16) | ((y * 255 / size) << 8) | 0x80);
+            }
+        }
+        return img;
+    }
+}
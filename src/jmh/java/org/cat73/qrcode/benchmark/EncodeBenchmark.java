@@ -0,0 +1,48 @@
+package org.cat73.qrcode.benchmark;
+
+import org.cat73.qrcode.builder.QRCodeBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与样式无关的输出方法的基准测试
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodeBenchmark {
+    /**
+     * QRVersion
+     */
+    @Param({"1", "10", "25", "40"})
+    public int version;
+    /**
+     * 纠错级别
+     */
+    @Param({"L", "M", "Q", "H"})
+    public String errorCorrection;
+
+    /**
+     * 被测试的 Builder
+     */
+    private QRCodeBuilder builder;
+
+    @Setup
+    public void setup() {
+        this.builder = Benchmarks.builder(this.version, this.errorCorrection);
+    }
+
+    @Benchmark
+    public boolean[][] toArray() {
+        return this.builder.toArray();
+    }
+
+    @Benchmark
+    public String toStr() {
+        return this.builder.toStr();
+    }
+}
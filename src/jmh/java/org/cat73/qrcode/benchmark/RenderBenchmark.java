@@ -0,0 +1,65 @@
+package org.cat73.qrcode.benchmark;
+
+import org.cat73.qrcode.builder.QRCodeBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图片输出方法在各个样式下的基准测试
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+    /**
+     * QRVersion
+     */
+    @Param({"1", "10", "25", "40"})
+    public int version;
+    /**
+     * 纠错级别
+     */
+    @Param({"L", "M", "Q", "H"})
+    public String errorCorrection;
+    /**
+     * 样式
+     */
+    @Param({"DEFAULT", "01", "02", "03", "04", "05", "06", "07", "08", "09", "10", "11", "ALL", "IMG"})
+    public String style;
+
+    /**
+     * 被测试的 Builder
+     */
+    private QRCodeBuilder builder;
+
+    @Setup
+    public void setup() {
+        this.builder = Benchmarks.builder(this.version, this.errorCorrection).style(Benchmarks.style(this.style));
+    }
+
+    @Benchmark
+    public BufferedImage toImg() {
+        return this.builder.toImg();
+    }
+
+    @Benchmark
+    public InputStream toPng() {
+        return this.builder.toPng();
+    }
+
+    @Benchmark
+    public InputStream toJpg() {
+        return this.builder.toJpg(0.8f);
+    }
+
+    @Benchmark
+    public InputStream toBmp() {
+        return this.builder.toBmp();
+    }
+}
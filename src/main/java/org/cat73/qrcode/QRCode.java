@@ -1,11 +1,20 @@
 package org.cat73.qrcode;
 
 import lombok.NonNull;
+import org.cat73.qrcode.batch.QRCodeBatch;
 import org.cat73.qrcode.builder.QRCodeBuilder;
+import org.cat73.qrcode.decoder.QRCodeDecoder;
 import org.cat73.qrcode.style.DefaultQRCodeStyle;
 import org.cat73.qrcode.style.IQRCodeStyle;
 import org.cat73.qrcode.style.ImgBlockQRCodeStyle;
 import org.cat73.qrcode.style.ImgQRCodeStyle;
+import org.cat73.qrcode.style.LazyQRCodeStyle;
+import org.cat73.qrcode.util.Lang;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * 二维码工具类
@@ -23,7 +32,7 @@ public class QRCode {
     /**
      * 内置的二维码样式 - 1<br>
      */
-    public static final IQRCodeStyle STYLE_01 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_01 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/01/11.png")
             .classpathImg(1, 1, "/imgs/01/12.png")
             .classpathImg(1, 1, "/imgs/01/13.png")
@@ -37,13 +46,13 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/01/42.png")
             .classpathImg(2, 2, "/imgs/01/43.png")
             .classpathEye("/imgs/01/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 2<br>
      * <em>识别率较低</em><br>
      */
-    public static final IQRCodeStyle STYLE_02 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_02 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/02/11.png")
             .classpathImg(1, 1, "/imgs/02/12.png")
             .classpathImg(1, 1, "/imgs/02/13.png")
@@ -57,12 +66,12 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/02/42.png")
             .classpathImg(2, 2, "/imgs/02/43.png")
             .classpathEye("/imgs/02/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 3<br>
      */
-    public static final IQRCodeStyle STYLE_03 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_03 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/03/11.png")
             .classpathImg(1, 1, "/imgs/03/12.png")
             .classpathImg(1, 1, "/imgs/03/13.png")
@@ -76,12 +85,12 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/03/42.png")
             .classpathImg(2, 2, "/imgs/03/43.png")
             .classpathEye("/imgs/03/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 4<br>
      */
-    public static final IQRCodeStyle STYLE_04 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_04 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/04/11.png")
             .classpathImg(1, 1, "/imgs/04/12.png")
             .classpathImg(1, 1, "/imgs/04/13.png")
@@ -95,12 +104,12 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/04/42.png")
             .classpathImg(2, 2, "/imgs/04/43.png")
             .classpathEye("/imgs/04/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 5<br>
      */
-    public static final IQRCodeStyle STYLE_05 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_05 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/05/11.png")
             .classpathImg(1, 1, "/imgs/05/12.png")
             .classpathImg(1, 1, "/imgs/05/13.png")
@@ -114,12 +123,12 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/05/42.png")
             .classpathImg(2, 2, "/imgs/05/43.png")
             .classpathEye("/imgs/05/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 6<br>
      */
-    public static final IQRCodeStyle STYLE_06 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_06 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/06/11.png")
             .classpathImg(1, 1, "/imgs/06/12.png")
             .classpathImg(1, 1, "/imgs/06/13.png")
@@ -133,12 +142,12 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/06/42.png")
             .classpathImg(2, 2, "/imgs/06/43.png")
             .classpathEye("/imgs/06/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 7<br>
      */
-    public static final IQRCodeStyle STYLE_07 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_07 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/07/1_1_01.png")
             .classpathImg(1, 2, "/imgs/07/1_2_01.png")
             .classpathImg(1, 2, "/imgs/07/1_2_02.png")
@@ -150,12 +159,12 @@ public class QRCode {
             .classpathImg(3, 1, "/imgs/07/3_1_01.png")
             .classpathImg(3, 2, "/imgs/07/3_2_01.png")
             .classpathEye("/imgs/07/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 8<br>
      */
-    public static final IQRCodeStyle STYLE_08 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_08 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/08/1_1_01.png")
             .classpathImg(1, 3, "/imgs/08/1_3_01.png")
             .classpathImg(1, 4, "/imgs/08/1_4_01.png")
@@ -163,12 +172,12 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/08/2_2_01.png")
             .classpathImg(2, 2, "/imgs/08/2_2_02.png")
             .classpathEye("/imgs/08/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 9<br>
      */
-    public static final IQRCodeStyle STYLE_09 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_09 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/09/1_1_01.png")
             .classpathImg(1, 3, "/imgs/09/1_3_01.png")
             .classpathImg(1, 4, "/imgs/09/1_4_01.png")
@@ -176,12 +185,12 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/09/2_2_01.png")
             .classpathImg(2, 2, "/imgs/09/2_2_02.png")
             .classpathEye("/imgs/09/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 10<br>
      */
-    public static final IQRCodeStyle STYLE_10 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_10 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/10/1_1_01.png")
             .classpathImg(1, 3, "/imgs/10/1_3_01.png")
             .classpathImg(1, 4, "/imgs/10/1_4_01.png")
@@ -191,12 +200,12 @@ public class QRCode {
             .classpathImg(2, 3, "/imgs/10/2_3_01.png")
             .classpathImg(3, 2, "/imgs/10/3_2_01.png")
             .classpathEye("/imgs/10/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的二维码样式 - 11<br>
      */
-    public static final IQRCodeStyle STYLE_11 = QRCode.imgBlockStyleBuilder()
+    public static final IQRCodeStyle STYLE_11 = LazyQRCodeStyle.of(() -> QRCode.imgBlockStyleBuilder()
             .classpathImg(1, 1, "/imgs/11/11.png")
             .classpathImg(1, 1, "/imgs/11/12.png")
             .classpathImg(1, 1, "/imgs/11/13.png")
@@ -210,25 +219,58 @@ public class QRCode {
             .classpathImg(2, 2, "/imgs/11/42.png")
             .classpathImg(2, 2, "/imgs/11/43.png")
             .classpathEye("/imgs/11/eye.png")
-            .build();
+            .build());
 
     /**
      * 内置的所有二维码样式合并而成的样式<br>
      * <em>识别率较低</em><br>
      */
-    public static final IQRCodeStyle STYLE_ALL = ImgBlockQRCodeStyle.merge(
-            (ImgBlockQRCodeStyle) QRCode.STYLE_01,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_02,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_03,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_04,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_05,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_06,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_07,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_08,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_09,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_10,
-            (ImgBlockQRCodeStyle) QRCode.STYLE_11
-    );
+    public static final IQRCodeStyle STYLE_ALL = LazyQRCodeStyle.of(() -> ImgBlockQRCodeStyle.merge(
+            QRCode.imgBlockStyle(QRCode.STYLE_01),
+            QRCode.imgBlockStyle(QRCode.STYLE_02),
+            QRCode.imgBlockStyle(QRCode.STYLE_03),
+            QRCode.imgBlockStyle(QRCode.STYLE_04),
+            QRCode.imgBlockStyle(QRCode.STYLE_05),
+            QRCode.imgBlockStyle(QRCode.STYLE_06),
+            QRCode.imgBlockStyle(QRCode.STYLE_07),
+            QRCode.imgBlockStyle(QRCode.STYLE_08),
+            QRCode.imgBlockStyle(QRCode.STYLE_09),
+            QRCode.imgBlockStyle(QRCode.STYLE_10),
+            QRCode.imgBlockStyle(QRCode.STYLE_11)
+    ));
+
+    /**
+     * 按编号排列的内置二维码样式，0 为普通纯色样式
+     */
+    private static final IQRCodeStyle[] STYLES = {
+            QRCode.STYLE_DEFAULT,
+            QRCode.STYLE_01, QRCode.STYLE_02, QRCode.STYLE_03, QRCode.STYLE_04,
+            QRCode.STYLE_05, QRCode.STYLE_06, QRCode.STYLE_07, QRCode.STYLE_08,
+            QRCode.STYLE_09, QRCode.STYLE_10, QRCode.STYLE_11
+    };
+
+    /**
+     * 按编号获取内置的二维码样式<br>
+     * 内置的图片样式会在第一次绘制时才加载图片，未使用的样式不会占用内存
+     * @param index 样式编号，0 为普通纯色样式，1 ~ 11 对应 STYLE_01 ~ STYLE_11
+     * @return 内置的二维码样式
+     */
+    public static IQRCodeStyle style(int index) {
+        if (index < 0 || index >= QRCode.STYLES.length) {
+            throw Lang.makeThrow("不存在编号为 %d 的内置样式", index);
+        }
+        return QRCode.STYLES[index];
+    }
+
+    /**
+     * 获取延迟初始化的内置样式对应的实际样式
+     * @param style 内置样式
+     * @return 实际的样式
+     */
+    @SuppressWarnings("unchecked")
+    private static ImgBlockQRCodeStyle imgBlockStyle(IQRCodeStyle style) {
+        return ((LazyQRCodeStyle<ImgBlockQRCodeStyle>) style).get();
+    }
 
     /**
      * 生成一个二维码的 Builder
@@ -239,6 +281,15 @@ public class QRCode {
         return new QRCodeBuilder(content);
     }
 
+    /**
+     * 基于模板 Builder 批量生成二维码
+     * @param template 模板 Builder，每个内容都会基于它的参数生成
+     * @return 批量生成二维码的实例
+     */
+    public static QRCodeBatch batch(@NonNull QRCodeBuilder template) {
+        return QRCodeBatch.of(template);
+    }
+
     /**
      * 获取一个用图片填充 block 的二维码样式的 Builder
      * @return 用图片填充 block 的二维码样式的 Builder 的实例
@@ -255,6 +306,45 @@ public class QRCode {
         return ImgQRCodeStyle.builder();
     }
 
-    // TODO 解析二维码
+    /**
+     * 解析图片中的二维码
+     * @param img 图片
+     * @return 二维码的内容
+     * @throws RuntimeException 图片中没有可识别的二维码
+     */
+    public static String decode(@NonNull BufferedImage img) {
+        return QRCodeDecoder.decode(img);
+    }
+
+    /**
+     * 解析图片中的二维码，不会关闭输入流
+     * @param in 图片数据的输入流
+     * @return 二维码的内容
+     * @throws RuntimeException 图片格式无法识别或图片中没有可识别的二维码
+     */
+    public static String decode(@NonNull InputStream in) {
+        return QRCodeDecoder.decode(in);
+    }
+
+    /**
+     * 解析图片文件中的二维码
+     * @param file 图片文件
+     * @return 二维码的内容
+     * @throws RuntimeException 图片读取失败、图片格式无法识别或图片中没有可识别的二维码
+     */
+    public static String decode(@NonNull File file) {
+        return QRCodeDecoder.decode(file);
+    }
+
+    /**
+     * 解析图片数据中的二维码，读取 position 到 limit 之间的数据，不会修改 buffer 的 position
+     * @param buffer 图片数据
+     * @return 二维码的内容
+     * @throws RuntimeException 图片格式无法识别或图片中没有可识别的二维码
+     */
+    public static String decode(@NonNull ByteBuffer buffer) {
+        return QRCodeDecoder.decode(buffer);
+    }
+
     // TODO 输出支持透明色
 }
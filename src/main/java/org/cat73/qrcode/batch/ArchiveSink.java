@@ -0,0 +1,64 @@
+package org.cat73.qrcode.batch;
+
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 批量生成时写出结果的归档文件，如 ZIP、TAR<br>
+ * 只会在调用批量生成方法的线程中使用，实现类无需线程安全
+ */
+public interface ArchiveSink extends Closeable {
+    /**
+     * 写出一个条目
+     * @param name 条目的名称，可以包含 / 分隔的目录
+     * @param data 条目的数据
+     * @param length 数据的长度
+     * @throws IOException 写出时出现的异常
+     */
+    void putEntry(@NonNull String name, @NonNull byte[] data, int length) throws IOException;
+
+    /**
+     * 写出归档文件的结尾，但不关闭底层的输出流
+     * @throws IOException 写出时出现的异常
+     */
+    void finish() throws IOException;
+
+    /**
+     * 写出归档文件的结尾，并关闭底层的输出流
+     * @throws IOException 写出时出现的异常
+     */
+    @Override
+    void close() throws IOException;
+
+    /**
+     * 写出到 ZIP 文件中<br>
+     * 图片数据通常已经是压缩过的，因此条目会以 STORED 方式写出，不再重复压缩
+     * @param out 输出流
+     * @return 写出到 ZIP 文件的实例
+     */
+    static ArchiveSink zip(@NonNull OutputStream out) {
+        return new ZipArchiveSink(new ZipOutputStream(out), true);
+    }
+
+    /**
+     * 写出到 ZIP 文件中，条目按输出流当前的压缩方式和级别写出
+     * @param out ZIP 输出流
+     * @return 写出到 ZIP 文件的实例
+     */
+    static ArchiveSink zip(@NonNull ZipOutputStream out) {
+        return new ZipArchiveSink(out, false);
+    }
+
+    /**
+     * 写出到 TAR(ustar) 文件中
+     * @param out 输出流
+     * @return 写出到 TAR 文件的实例
+     */
+    static ArchiveSink tar(@NonNull OutputStream out) {
+        return new TarArchiveSink(out);
+    }
+}
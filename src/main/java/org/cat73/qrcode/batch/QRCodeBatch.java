@@ -0,0 +1,308 @@
+package org.cat73.qrcode.batch;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.cat73.qrcode.builder.QRCodeBuilder;
+import org.cat73.qrcode.util.FastByteArrayOutputStream;
+import org.cat73.qrcode.util.Lang;
+import org.cat73.qrcode.writer.PdfSheetWriter;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 批量生成二维码<br>
+ * 所有二维码都基于同一个模板 Builder 的参数生成，编码和绘制会在线程池中并行执行，样式的图片缓存、线程内复用的缓冲区等均会被共用<br>
+ * 同时执行的任务数有上限，因此内容可以来自一个很大的(甚至无限的)流，而不会一次性占用大量内存
+ */
+public final class QRCodeBatch {
+    /**
+     * 模板 Builder，每个内容都会基于它的参数生成
+     */
+    private final QRCodeBuilder template;
+    /**
+     * 执行编码和绘制的线程池，默认为公共的 ForkJoinPool
+     */
+    private Executor executor = ForkJoinPool.commonPool();
+    /**
+     * 最多同时执行(或已完成但尚未被处理)的任务数
+     */
+    private int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+    /**
+     * 是否按内容的顺序处理结果
+     */
+    private boolean ordered = true;
+
+    /**
+     * 构造一个批量生成二维码的实例
+     * @param template 模板 Builder，每个内容都会基于它的参数生成，开始生成后不应再修改它
+     */
+    private QRCodeBatch(@NonNull QRCodeBuilder template) {
+        this.template = template;
+    }
+
+    /**
+     * 基于模板 Builder 批量生成二维码
+     * @param template 模板 Builder，每个内容都会基于它的参数生成，开始生成后不应再修改它
+     * @return 批量生成二维码的实例
+     */
+    public static QRCodeBatch of(@NonNull QRCodeBuilder template) {
+        return new QRCodeBatch(template);
+    }
+
+    /**
+     * 设置执行编码和绘制的线程池
+     * @param executor 线程池
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBatch executor(@NonNull Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 使用公共的 ForkJoinPool 执行编码和绘制
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBatch commonPool() {
+        return this.executor(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 设置最多同时执行(或已完成但尚未被处理)的任务数，默认为 CPU 核数的 2 倍
+     * @param maxInFlight 最多同时执行的任务数
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBatch maxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) throw Lang.makeThrow("maxInFlight < 1");
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * 按内容的顺序处理结果(默认)
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBatch ordered() {
+        this.ordered = true;
+        return this;
+    }
+
+    /**
+     * 按完成的顺序处理结果，先生成完的先处理，吞吐量通常更高
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBatch unordered() {
+        this.ordered = false;
+        return this;
+    }
+
+    /**
+     * 批量生成二维码<br>
+     * render 会在线程池中并行执行，consumer 只会在调用此方法的线程中执行，因此无需线程安全<br>
+     * 任意一个任务出现异常时，会取消尚未完成的任务，并抛出该异常
+     * @param contents 内容列表
+     * @param render 生成结果的方法，参数为基于模板和内容构建的 Builder
+     * @param consumer 处理结果的方法，参数为内容和生成的结果
+     * @param <R> 生成结果的类型
+     */
+    public <R> void forEach(@NonNull Iterable<String> contents, @NonNull Lang.ThrowableFunction<QRCodeBuilder, R> render,
+                            @NonNull Lang.ThrowableBiConsumer<String, R> consumer) {
+        this.run(contents.iterator(), this.ordered, render, consumer);
+    }
+
+    /**
+     * 批量生成二维码<br>
+     * render 会在线程池中并行执行，consumer 只会在调用此方法的线程中执行，因此无需线程安全<br>
+     * 任意一个任务出现异常时，会取消尚未完成的任务，并抛出该异常
+     * @param contents 内容流，会被顺序消费
+     * @param render 生成结果的方法，参数为基于模板和内容构建的 Builder
+     * @param consumer 处理结果的方法，参数为内容和生成的结果
+     * @param <R> 生成结果的类型
+     */
+    public <R> void forEach(@NonNull Stream<String> contents, @NonNull Lang.ThrowableFunction<QRCodeBuilder, R> render,
+                            @NonNull Lang.ThrowableBiConsumer<String, R> consumer) {
+        this.run(contents.iterator(), this.ordered, render, consumer);
+    }
+
+    /**
+     * 批量生成二维码，并按内容的顺序返回所有结果<br>
+     * 结果会全部保存在内存中，内容很多时，建议使用 {@link #forEach(Iterable, Lang.ThrowableFunction, Lang.ThrowableBiConsumer)}
+     * @param contents 内容列表
+     * @param render 生成结果的方法，参数为基于模板和内容构建的 Builder
+     * @param <R> 生成结果的类型
+     * @return 所有结果，与内容的顺序一致
+     */
+    public <R> List<R> map(@NonNull Iterable<String> contents, @NonNull Lang.ThrowableFunction<QRCodeBuilder, R> render) {
+        List<R> results = new ArrayList<>();
+        this.run(contents.iterator(), true, render, (content, result) -> results.add(result));
+        return results;
+    }
+
+    /**
+     * 批量生成 PNG 图片<br>
+     * consumer 只会在调用此方法的线程中执行，因此无需线程安全
+     * @param contents 内容列表
+     * @param consumer 处理结果的方法，参数为内容和 PNG 图片的数据
+     */
+    public void forEachPng(@NonNull Iterable<String> contents, @NonNull Lang.ThrowableBiConsumer<String, byte[]> consumer) {
+        this.forEach(contents, QRCodeBatch::pngBytes, consumer);
+    }
+
+    /**
+     * 批量生成 PNG 图片，并写出到文件中<br>
+     * 生成和写出文件都会在线程池中并行执行
+     * @param contents 内容列表
+     * @param files 获取内容对应的文件的方法，会在线程池中执行，因此需要线程安全
+     */
+    public void writePngTo(@NonNull Iterable<String> contents, @NonNull Function<String, File> files) {
+        this.forEach(contents, builder -> {
+            builder.writePngTo(files.apply(builder.getContent()));
+            return null;
+        }, (content, result) -> {});
+    }
+
+    /**
+     * 批量生成 PNG 图片，并写出到归档文件(如 ZIP、TAR)中<br>
+     * 编码和绘制在线程池中并行执行，写出在调用此方法的线程中执行，因此写出上一张图片时，后面的图片仍在生成<br>
+     * 不会写出归档文件的结尾，全部写出后，需要由调用方调用 {@link ArchiveSink#finish()} 或 {@link ArchiveSink#close()}
+     * @param contents 内容列表
+     * @param entryNames 获取内容对应的条目名称的方法，如 {@code c -> c + ".png"}
+     * @param sink 归档文件
+     */
+    public void writePngTo(@NonNull Iterable<String> contents, @NonNull Function<String, String> entryNames, @NonNull ArchiveSink sink) {
+        this.writeTo(contents, entryNames, QRCodeBatch::pngBytes, sink);
+    }
+
+    /**
+     * 批量生成二维码，并写出到归档文件(如 ZIP、TAR)中<br>
+     * 编码和绘制在线程池中并行执行，写出在调用此方法的线程中执行，因此写出上一个条目时，后面的条目仍在生成<br>
+     * 不会写出归档文件的结尾，全部写出后，需要由调用方调用 {@link ArchiveSink#finish()} 或 {@link ArchiveSink#close()}
+     * @param contents 内容列表
+     * @param entryNames 获取内容对应的条目名称的方法，只会在调用此方法的线程中执行
+     * @param render 生成条目数据的方法，参数为基于模板和内容构建的 Builder
+     * @param sink 归档文件
+     */
+    public void writeTo(@NonNull Iterable<String> contents, @NonNull Function<String, String> entryNames,
+                        @NonNull Lang.ThrowableFunction<QRCodeBuilder, byte[]> render, @NonNull ArchiveSink sink) {
+        this.forEach(contents, render, (content, data) -> sink.putEntry(entryNames.apply(content), data, data.length));
+    }
+
+    /**
+     * 批量编码二维码，并按内容的顺序排列到 PDF 标签页中<br>
+     * 编码在线程池中并行执行，写出在调用此方法的线程中执行，每写满一页就会立即写出，占用的内存与总数无关<br>
+     * 不会写出 PDF 的结尾，全部写出后，需要由调用方调用 {@link PdfSheetWriter#finish()} 或 {@link PdfSheetWriter#close()}
+     * @param contents 内容列表
+     * @param pdf PDF 标签页写出器
+     */
+    public void writePdfTo(@NonNull Iterable<String> contents, @NonNull PdfSheetWriter pdf) {
+        this.run(contents.iterator(), true, QRCodeBuilder::toMatrix, (content, matrix) -> pdf.add(matrix));
+    }
+
+    /**
+     * 获取 PNG 图片的数据
+     * @param builder 二维码 Builder
+     * @return PNG 图片的数据
+     */
+    private static byte[] pngBytes(QRCodeBuilder builder) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        builder.writePngTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 一个任务的结果
+     * @param <R> 生成结果的类型
+     */
+    @RequiredArgsConstructor
+    private static class Result<R> {
+        /**
+         * 内容
+         */
+        private final String content;
+        /**
+         * 生成的结果
+         */
+        private final R value;
+    }
+
+    /**
+     * 批量生成二维码，同时执行的任务数不超过 {@link #maxInFlight}
+     * @param contents 内容
+     * @param ordered 是否按内容的顺序处理结果
+     * @param render 生成结果的方法
+     * @param consumer 处理结果的方法
+     * @param <R> 生成结果的类型
+     */
+    private <R> void run(Iterator<String> contents, boolean ordered, Lang.ThrowableFunction<QRCodeBuilder, R> render,
+                         Lang.ThrowableBiConsumer<String, R> consumer) {
+        // 尚未被处理的任务，按提交的顺序排列
+        ArrayDeque<Future<Result<R>>> pending = new ArrayDeque<>(this.maxInFlight);
+        // 按完成顺序处理时，通过它获取已完成的任务
+        CompletionService<Result<R>> completion = ordered ? null : new ExecutorCompletionService<>(this.executor);
+
+        try {
+            while (contents.hasNext()) {
+                // 任务数达到上限时，先处理一个结果
+                if (pending.size() >= this.maxInFlight) {
+                    this.consumeOne(pending, completion, consumer);
+                }
+
+                // 提交新的任务
+                String content = contents.next();
+                QRCodeBuilder builder = this.template.withContent(content);
+                Callable<Result<R>> task = () -> new Result<>(content, render.apply(builder));
+                if (completion == null) {
+                    FutureTask<Result<R>> future = new FutureTask<>(task);
+                    this.executor.execute(future);
+                    pending.add(future);
+                } else {
+                    pending.add(completion.submit(task));
+                }
+            }
+
+            // 处理剩余的结果
+            while (!pending.isEmpty()) {
+                this.consumeOne(pending, completion, consumer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Lang.wrapThrow(e);
+        } catch (ExecutionException e) {
+            throw Lang.wrapThrow(e.getCause());
+        } catch (Exception e) {
+            throw Lang.wrapThrow(e);
+        } finally {
+            // 出现异常时取消尚未完成的任务，正常结束时这里不会有任何任务
+            pending.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * 等待并处理一个任务的结果
+     * @param pending 尚未被处理的任务
+     * @param completion 按完成顺序处理时使用的 CompletionService，按内容顺序处理时为 null
+     * @param consumer 处理结果的方法
+     * @param <R> 生成结果的类型
+     * @throws Exception 任务或处理结果时出现的异常
+     */
+    private <R> void consumeOne(ArrayDeque<Future<Result<R>>> pending, CompletionService<Result<R>> completion,
+                                Lang.ThrowableBiConsumer<String, R> consumer) throws Exception {
+        Future<Result<R>> future;
+        if (completion == null) {
+            future = pending.poll();
+        } else {
+            future = completion.take();
+            pending.remove(future);
+        }
+
+        Result<R> result = future.get();
+        consumer.accept(result.content, result.value);
+    }
+}
@@ -0,0 +1,142 @@
+package org.cat73.qrcode.batch;
+
+import lombok.NonNull;
+import org.cat73.qrcode.util.Lang;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 写出到 TAR(ustar) 文件的实现
+ */
+final class TarArchiveSink implements ArchiveSink {
+    /**
+     * TAR 的块大小
+     */
+    private static final int BLOCK = 512;
+    /**
+     * 输出流
+     */
+    private final OutputStream out;
+    /**
+     * 条目头，每个条目复用
+     */
+    private final byte[] header = new byte[BLOCK];
+    /**
+     * 所有条目的修改时间(秒)
+     */
+    private final long mtime = System.currentTimeMillis() / 1000;
+    /**
+     * 是否已经写出了结尾
+     */
+    private boolean finished = false;
+
+    /**
+     * 构造一个写出到 TAR 文件的实例
+     * @param out 输出流
+     */
+    TarArchiveSink(@NonNull OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void putEntry(@NonNull String name, @NonNull byte[] data, int length) throws IOException {
+        if (this.finished) throw Lang.makeThrow("archive is finished");
+
+        byte[] header = this.header;
+        Arrays.fill(header, (byte) 0);
+
+        // 名称超过 100 字节时，将目录部分放到 prefix 中
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int split = 0;
+        if (nameBytes.length > 100) {
+            for (int i = nameBytes.length - 101; i < nameBytes.length && i <= 155; i++) {
+                if (i > 0 && nameBytes[i] == '/') {
+                    split = i;
+                    break;
+                }
+            }
+            if (split == 0) throw Lang.makeThrow("entry name is too long: %s", name);
+            System.arraycopy(nameBytes, 0, header, 345, split);
+        }
+        int nameStart = split == 0 ? 0 : split + 1;
+        System.arraycopy(nameBytes, nameStart, header, 0, nameBytes.length - nameStart);
+
+        TarArchiveSink.octal(header, 100, 8, 0644); // mode
+        TarArchiveSink.octal(header, 108, 8, 0); // uid
+        TarArchiveSink.octal(header, 116, 8, 0); // gid
+        TarArchiveSink.octal(header, 124, 12, length); // size
+        TarArchiveSink.octal(header, 136, 12, this.mtime); // mtime
+        header[156] = '0'; // typeflag: 普通文件
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6); // magic
+        header[263] = '0'; // version
+        header[264] = '0';
+
+        // 校验和，计算时校验和字段视为 8 个空格
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        TarArchiveSink.octal(header, 148, 7, checksum);
+
+        this.out.write(header);
+        this.out.write(data, 0, length);
+        this.pad(length);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (this.finished) return;
+
+        // 结尾为两个全 0 的块
+        Arrays.fill(this.header, (byte) 0);
+        this.out.write(this.header);
+        this.out.write(this.header);
+        this.out.flush();
+        this.finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.finish();
+        } finally {
+            this.out.close();
+        }
+    }
+
+    /**
+     * 用 0 填充数据到块大小的整数倍
+     * @param length 数据的长度
+     * @throws IOException 写出时出现的异常
+     */
+    private void pad(int length) throws IOException {
+        int remainder = length % BLOCK;
+        if (remainder != 0) {
+            Arrays.fill(this.header, (byte) 0);
+            this.out.write(this.header, 0, BLOCK - remainder);
+        }
+    }
+
+    /**
+     * 以 0 结尾的八进制数字的形式写出一个字段
+     * @param buf 条目头
+     * @param offset 字段的位置
+     * @param length 字段的长度(包括结尾的 0)
+     * @param value 字段的值
+     */
+    private static void octal(byte[] buf, int offset, int length, long value) {
+        String str = Long.toOctalString(value);
+        if (str.length() > length - 1) throw Lang.makeThrow("tar field overflow: %d", value);
+
+        int start = offset + length - 1 - str.length();
+        Arrays.fill(buf, offset, start, (byte) '0');
+        for (int i = 0; i < str.length(); i++) {
+            buf[start + i] = (byte) str.charAt(i);
+        }
+        buf[offset + length - 1] = 0;
+    }
+}
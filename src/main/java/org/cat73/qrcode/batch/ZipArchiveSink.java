@@ -0,0 +1,64 @@
+package org.cat73.qrcode.batch;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 写出到 ZIP 文件的实现
+ */
+final class ZipArchiveSink implements ArchiveSink {
+    /**
+     * ZIP 输出流
+     */
+    private final ZipOutputStream out;
+    /**
+     * 是否以 STORED 方式写出条目
+     */
+    private final boolean stored;
+    /**
+     * 计算 STORED 条目的校验和
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * 构造一个写出到 ZIP 文件的实例
+     * @param out ZIP 输出流
+     * @param stored 是否以 STORED 方式写出条目
+     */
+    ZipArchiveSink(@NonNull ZipOutputStream out, boolean stored) {
+        this.out = out;
+        this.stored = stored;
+    }
+
+    @Override
+    public void putEntry(@NonNull String name, @NonNull byte[] data, int length) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (this.stored) {
+            // STORED 方式需要提前给出大小和校验和
+            this.crc.reset();
+            this.crc.update(data, 0, length);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(length);
+            entry.setCompressedSize(length);
+            entry.setCrc(this.crc.getValue());
+        }
+
+        this.out.putNextEntry(entry);
+        this.out.write(data, 0, length);
+        this.out.closeEntry();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        this.out.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+}
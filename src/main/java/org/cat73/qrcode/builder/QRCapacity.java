@@ -0,0 +1,138 @@
+package org.cat73.qrcode.builder;
+
+import com.google.zxing.common.CharacterSetECI;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+import java.nio.charset.Charset;
+
+/**
+ * 按 zxing Encoder 的编码方式，直接计算内容编码后需要的位数，无需实际编码即可得知各个 QRVersion 和容错级别能否放下内容
+ */
+final class QRCapacity {
+    /**
+     * 编码模式
+     */
+    private final Mode mode;
+    /**
+     * 字符数，即长度信息中记录的值
+     */
+    private final int count;
+    /**
+     * 模式信息和 ECI 信息的位数
+     */
+    private final int headerBits;
+    /**
+     * 内容本身的位数
+     */
+    private final int dataBits;
+
+    /**
+     * 构造一个容量计算的实例
+     * @param mode 编码模式
+     * @param count 字符数
+     * @param headerBits 模式信息和 ECI 信息的位数
+     * @param dataBits 内容本身的位数
+     */
+    private QRCapacity(Mode mode, int count, int headerBits, int dataBits) {
+        this.mode = mode;
+        this.count = count;
+        this.headerBits = headerBits;
+        this.dataBits = dataBits;
+    }
+
+    /**
+     * 计算内容编码后需要的位数
+     * @param content 内容
+     * @param charset 内容编码
+     * @return 容量计算的实例
+     */
+    static QRCapacity of(String content, Charset charset) {
+        // Shift_JIS 时纯双字节汉字的内容会使用 KANJI 模式，其他情况与 Encoder.chooseMode 相同
+        byte[] sjis = QRCapacity.isShiftJis(charset) ? QRCapacity.onlyDoubleByteKanji(content) : null;
+        Mode mode = sjis != null ? Mode.KANJI : Encoder.chooseMode(content);
+
+        // 模式信息 4 位，Builder 总会指定内容编码，因此 BYTE 模式还有 4 位的 ECI 模式信息和 8 位的 ECI 值
+        int headerBits = 4;
+        if (mode == Mode.BYTE && CharacterSetECI.getCharacterSetECIByName(charset.name()) != null) {
+            headerBits += 4 + 8;
+        }
+
+        int length = content.length();
+        switch (mode) {
+            case NUMERIC:
+                // 每 3 个数字 10 位，剩余 1 个 4 位、2 个 7 位
+                return new QRCapacity(mode, length, headerBits, length / 3 * 10 + (length % 3 == 1 ? 4 : length % 3 == 2 ? 7 : 0));
+            case ALPHANUMERIC:
+                // 每 2 个字符 11 位，剩余 1 个 6 位
+                return new QRCapacity(mode, length, headerBits, length / 2 * 11 + (length % 2) * 6);
+            case KANJI:
+                // 每个汉字 13 位
+                return new QRCapacity(mode, sjis.length / 2, headerBits, sjis.length / 2 * 13);
+            default:
+                int bytes = content.getBytes(charset).length;
+                return new QRCapacity(mode, bytes, headerBits, bytes * 8);
+        }
+    }
+
+    /**
+     * 获取能放下内容的最小 QRVersion
+     * @param level 容错级别
+     * @return 最小的 QRVersion，40 也放不下时返回 -1
+     */
+    int minVersion(ErrorCorrectionLevel level) {
+        for (int i = 1; i <= 40; i++) {
+            if (this.fits(Version.getVersionForNumber(i), level)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 判断指定的 QRVersion 和容错级别能否放下内容
+     * @param version QRVersion
+     * @param level 容错级别
+     * @return 能否放下内容
+     */
+    boolean fits(Version version, ErrorCorrectionLevel level) {
+        // 字符数必须能用长度信息的位数表示
+        int countBits = this.mode.getCharacterCountBits(version);
+        if (this.count >= (1 << countBits)) {
+            return false;
+        }
+
+        int numDataBytes = version.getTotalCodewords() - version.getECBlocksForLevel(level).getTotalECCodewords();
+        return this.headerBits + countBits + this.dataBits <= numDataBytes * 8;
+    }
+
+    /**
+     * 判断内容编码是否为 Shift_JIS
+     * @param charset 内容编码
+     * @return 是否为 Shift_JIS
+     */
+    private static boolean isShiftJis(Charset charset) {
+        return "Shift_JIS".equals(charset.name());
+    }
+
+    /**
+     * 判断内容是否全部为 Shift_JIS 的双字节汉字，与 Encoder 的判断方式相同
+     * @param content 内容
+     * @return 是则返回 Shift_JIS 编码后的内容，否则返回 null
+     */
+    private static byte[] onlyDoubleByteKanji(String content) {
+        byte[] bytes = content.getBytes(Charset.forName("Shift_JIS"));
+        if (bytes.length % 2 != 0) {
+            return null;
+        }
+        for (int i = 0; i < bytes.length; i += 2) {
+            int b = bytes[i] & 0xFF;
+            if ((b < 0x81 || b > 0x9F) && (b < 0xE0 || b > 0xEB)) {
+                return null;
+            }
+        }
+        return bytes;
+    }
+}
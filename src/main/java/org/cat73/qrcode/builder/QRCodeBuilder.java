@@ -1,28 +1,50 @@
 package org.cat73.qrcode.builder;
 
 import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
-import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.decoder.Version;
 import com.google.zxing.qrcode.encoder.Encoder;
 import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.Setter;
 import org.cat73.qrcode.QRCode;
+import org.cat73.qrcode.cache.OutputCache;
+import org.cat73.qrcode.cache.OutputKey;
+import org.cat73.qrcode.cache.SymbolCache;
+import org.cat73.qrcode.cache.SymbolKey;
+import org.cat73.qrcode.decoder.QRCodeVerifier;
+import org.cat73.qrcode.matrix.QRMatrix;
+import org.cat73.qrcode.render.PooledImage;
+import org.cat73.qrcode.render.RenderContext;
+import org.cat73.qrcode.style.DefaultQRCodeStyle;
 import org.cat73.qrcode.style.IQRCodeStyle;
+import org.cat73.qrcode.util.ByteBufferOutputStream;
+import org.cat73.qrcode.util.FastByteArrayOutputStream;
+import org.cat73.qrcode.util.Images;
 import org.cat73.qrcode.util.Lang;
 import org.cat73.qrcode.util.Strings;
+import org.cat73.qrcode.writer.AnsiWriter;
+import org.cat73.qrcode.writer.PngWriter;
+import org.cat73.qrcode.writer.SvgWriter;
 
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 二维码 Builder
@@ -50,6 +72,22 @@ public class QRCodeBuilder {
      * 边框块数
      */
     private int borderBlock = 1;
+    /**
+     * 编码结果的缓存，默认不缓存
+     */
+    private SymbolCache symbolCache = SymbolCache.none();
+    /**
+     * 输出结果的缓存，默认不缓存
+     */
+    private OutputCache outputCache = OutputCache.none();
+    /**
+     * 自动适配的图片最大宽度(像素)，为 0 时不自动适配
+     */
+    private int fitPixels = 0;
+    /**
+     * 自动适配时的最小块大小(像素)
+     */
+    private int fitMinBlockSize = 0;
     // **** 图片参数 ****
     /**
      * 块大小(像素)
@@ -68,6 +106,22 @@ public class QRCodeBuilder {
      * 非默认样式时，建议 {@link #qrVersion} 至少为 2
      */
     private IQRCodeStyle style = QRCode.STYLE_DEFAULT;
+    /**
+     * 样式使用的随机数种子，为 null 时不指定
+     */
+    private Long seed = null;
+    /**
+     * 输出 PNG 时使用的编码器
+     */
+    private PngWriter pngWriter = PngWriter.DEFAULT;
+    /**
+     * 绘制时复用图片的上下文，为 null 时每次都分配新的图片
+     */
+    private RenderContext renderContext = null;
+    /**
+     * 输出图片后用于校验能否识别的校验器，为 null 时不校验
+     */
+    private QRCodeVerifier verifier = null;
     // **** Logo ****
     /**
      * Logo 图片
@@ -87,6 +141,27 @@ public class QRCodeBuilder {
      * toStr 时，背景色输出为的内容
      */
     private String backgroundStr = "██";
+    /**
+     * toStr 时，是否使用半高方块字符，每行文本输出两行块
+     */
+    private boolean halfBlockStr = false;
+
+    /**
+     * 自动适配时默认的最小块大小(像素)
+     */
+    private static final int DEFAULT_FIT_MIN_BLOCK_SIZE = 2;
+    /**
+     * 自动适配时最小的边框块数
+     */
+    private static final int MIN_FIT_BORDER_BLOCK = 1;
+    /**
+     * 自动适配时最大的边框块数，即标准中建议的静区宽度
+     */
+    private static final int MAX_FIT_BORDER_BLOCK = 4;
+    /**
+     * 拼版图片中相邻两个二维码之间至少间隔的块数，即标准中建议的静区宽度
+     */
+    private static final int SHEET_QUIET_ZONE_BLOCK = 4;
 
     // **** 生成参数 ****
     /**
@@ -98,12 +173,57 @@ public class QRCodeBuilder {
         this.content = content;
     }
 
+    /**
+     * 基于当前 Builder 的所有参数，构建一个内容不同的二维码 Builder<br>
+     * 样式、Logo 图片和缓存等参数与当前 Builder 共用同一个实例，之后修改任意一个 Builder 都不会影响另一个
+     * @param content 内容
+     * @return 新的二维码 Builder
+     */
+    public QRCodeBuilder withContent(@NonNull String content) {
+        QRCodeBuilder builder = new QRCodeBuilder(content);
+        builder.errorCorrectionLevel = this.errorCorrectionLevel;
+        builder.qrVersion = this.qrVersion;
+        builder.charset = this.charset;
+        builder.borderBlock = this.borderBlock;
+        builder.symbolCache = this.symbolCache;
+        builder.outputCache = this.outputCache;
+        builder.blockSize = this.blockSize;
+        builder.foregroundColor = this.foregroundColor;
+        builder.backgroundColor = this.backgroundColor;
+        builder.style = this.style;
+        builder.seed = this.seed;
+        builder.pngWriter = this.pngWriter;
+        builder.renderContext = this.renderContext;
+        builder.verifier = this.verifier;
+        builder.logoImg = this.logoImg;
+        builder.logoSize = this.logoSize;
+        builder.foregroundStr = this.foregroundStr;
+        builder.backgroundStr = this.backgroundStr;
+        builder.halfBlockStr = this.halfBlockStr;
+        builder.fitPixels = this.fitPixels;
+        builder.fitMinBlockSize = this.fitMinBlockSize;
+        // 内容不同，需要的 QRVersion 也不同，重新适配
+        if (builder.fitPixels > 0) {
+            builder.fit();
+        }
+        return builder;
+    }
+
+    /**
+     * 获取二维码的内容
+     * @return 二维码的内容
+     */
+    public String getContent() {
+        return this.content;
+    }
+
     /**
      * 使用 low 纠错级别(7%)
      * @return 自身实例，方便链式调用
      */
     public QRCodeBuilder lowErrorCorrection() {
         this.errorCorrectionLevel = ErrorCorrectionLevel.L;
+        this.fitPixels = 0;
         return this;
     }
 
@@ -113,6 +233,7 @@ public class QRCodeBuilder {
      */
     public QRCodeBuilder mediumErrorCorrection() {
         this.errorCorrectionLevel = ErrorCorrectionLevel.M;
+        this.fitPixels = 0;
         return this;
     }
 
@@ -122,6 +243,7 @@ public class QRCodeBuilder {
      */
     public QRCodeBuilder quartileErrorCorrection() {
         this.errorCorrectionLevel = ErrorCorrectionLevel.Q;
+        this.fitPixels = 0;
         return this;
     }
 
@@ -131,6 +253,7 @@ public class QRCodeBuilder {
      */
     public QRCodeBuilder highErrorCorrection() {
         this.errorCorrectionLevel = ErrorCorrectionLevel.H;
+        this.fitPixels = 0;
         return this;
     }
 
@@ -142,6 +265,7 @@ public class QRCodeBuilder {
     public QRCodeBuilder qrVersion(int version) {
         if (version < 0 || version > 40) throw new IndexOutOfBoundsException("qrVersion");
         this.qrVersion = version;
+        this.fitPixels = 0;
         return this;
     }
 
@@ -152,6 +276,10 @@ public class QRCodeBuilder {
      */
     public QRCodeBuilder charset(@NonNull Charset charset) {
         this.charset = charset;
+        // 内容编码会影响需要的位数，重新适配
+        if (this.fitPixels > 0) {
+            this.fit();
+        }
         return this;
     }
 
@@ -163,6 +291,91 @@ public class QRCodeBuilder {
     public QRCodeBuilder borderBlock(int borderBlock) {
         if (borderBlock < 0) throw Lang.makeThrow("borderBlock < 0");
         this.borderBlock = borderBlock;
+        this.fitPixels = 0;
+        return this;
+    }
+
+    /**
+     * 自动适配图片的大小，最小块大小为 {@value #DEFAULT_FIT_MIN_BLOCK_SIZE} 像素
+     * @param pixels 图片的最大宽度(像素)
+     * @return 自身实例，方便链式调用
+     * @see #fitTo(int, int)
+     */
+    public QRCodeBuilder fitTo(int pixels) {
+        return this.fitTo(pixels, DEFAULT_FIT_MIN_BLOCK_SIZE);
+    }
+
+    /**
+     * 自动适配图片的大小，输出的图片宽度不会超过 pixels<br>
+     * 直接计算每个 QRVersion 和容错级别的容量，选择块大小不小于 minBlockSize 时能放下内容的最高容错级别，及该级别下最小的 QRVersion，
+     * 再由此计算块大小和边框块数(至少为 1，最多为 4)，之后只需编码一次<br>
+     * 会覆盖容错级别、QRVersion、块大小和边框块数的设置，之后再手动设置它们时，会取消自动适配
+     * @param pixels 图片的最大宽度(像素)
+     * @param minBlockSize 最小块大小(像素)
+     * @return 自身实例，方便链式调用
+     * @throws RuntimeException 内容过长，最低的容错级别也无法放入
+     */
+    public QRCodeBuilder fitTo(int pixels, int minBlockSize) {
+        if (minBlockSize < 1) throw Lang.makeThrow("minBlockSize < 1");
+        if (pixels < 1) throw Lang.makeThrow("pixels < 1");
+        this.fitPixels = pixels;
+        this.fitMinBlockSize = minBlockSize;
+        this.fit();
+        return this;
+    }
+
+    /**
+     * 按 {@link #fitPixels} 和 {@link #fitMinBlockSize} 计算容错级别、QRVersion、块大小和边框块数
+     */
+    private void fit() {
+        QRCapacity capacity = QRCapacity.of(this.content, this.charset);
+
+        // ErrorCorrectionLevel 按 L、M、Q、H 的顺序声明，从最高的容错级别开始尝试
+        ErrorCorrectionLevel[] levels = ErrorCorrectionLevel.values();
+        for (int i = levels.length - 1; i >= 0; i--) {
+            int version = capacity.minVersion(levels[i]);
+            if (version < 0) {
+                continue;
+            }
+
+            // 先按最小的边框计算块大小，再用剩余的空间加宽边框
+            int size = 17 + 4 * version;
+            int blockSize = this.fitPixels / (size + 2 * MIN_FIT_BORDER_BLOCK);
+            if (blockSize < this.fitMinBlockSize) {
+                continue;
+            }
+
+            this.errorCorrectionLevel = levels[i];
+            this.qrVersion = version;
+            this.blockSize = blockSize;
+            this.borderBlock = Math.min((this.fitPixels / blockSize - size) / 2, MAX_FIT_BORDER_BLOCK);
+            return;
+        }
+
+        throw Lang.makeThrow("内容过长，无法放入宽度为 %d 像素、块大小至少为 %d 像素的图片中", this.fitPixels, this.fitMinBlockSize);
+    }
+
+    /**
+     * 设置编码结果的缓存<br>
+     * 内容、编码、容错级别、QRVersion 均相同时，会直接使用缓存的编码结果，不再重新编码
+     * @param symbolCache 编码结果的缓存，如需禁用缓存，请使用 {@link SymbolCache#none()}
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder symbolCache(@NonNull SymbolCache symbolCache) {
+        this.symbolCache = symbolCache;
+        return this;
+    }
+
+    /**
+     * 设置输出结果的缓存<br>
+     * 所有参数均相同时，{@link #toPng()}、{@link #toJpg(float)}、{@link #toBmp()} 会直接返回缓存的图片数据<br>
+     * 样式按 equals 区分，Logo 图片按实例区分，使用随机样式(如 {@link org.cat73.qrcode.style.ImgBlockQRCodeStyle})且未指定 {@link #seed(long)} 时不会缓存<br>
+     * 设置了 {@link #verify(QRCodeVerifier)} 时既不读取也不写入缓存
+     * @param outputCache 输出结果的缓存，如需禁用缓存，请使用 {@link OutputCache#none()}
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder outputCache(@NonNull OutputCache outputCache) {
+        this.outputCache = outputCache;
         return this;
     }
 
@@ -175,6 +388,7 @@ public class QRCodeBuilder {
     public QRCodeBuilder blockSize(int blockSize) {
         if (blockSize < 1) throw Lang.makeThrow("blockSize < 1");
         this.blockSize = blockSize;
+        this.fitPixels = 0;
         return this;
     }
 
@@ -213,6 +427,77 @@ public class QRCodeBuilder {
         return this;
     }
 
+    /**
+     * 设置样式使用的随机数种子<br>
+     * 对随机选择图片的样式(如 {@link org.cat73.qrcode.style.ImgBlockQRCodeStyle})，相同的种子总会生成相同的图片，其输出结果也可以被缓存
+     * @param seed 随机数种子
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * 不指定样式使用的随机数种子
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder noneSeed() {
+        this.seed = null;
+        return this;
+    }
+
+    /**
+     * 设置绘制时复用图片的上下文<br>
+     * 设置后，输出 PNG、JPG、BMP 时会从中借出图片并在输出后归还，固定尺寸反复输出时几乎不再分配新的图片
+     * @param renderContext 绘制时复用图片的上下文，为 null 时每次都分配新的图片
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder renderContext(RenderContext renderContext) {
+        this.renderContext = renderContext;
+        return this;
+    }
+
+    /**
+     * 输出图片后立即解析它，确认能识别出相同的内容，使用默认参数的校验器<br>
+     * 每次调用都会使用一个新的校验器，如需共用统计信息，请使用 {@link #verify(QRCodeVerifier)}
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder verify() {
+        return this.verify(new QRCodeVerifier());
+    }
+
+    /**
+     * 输出图片后立即解析它，确认能识别出相同的内容<br>
+     * 识别失败时，会依次尝试提高容错级别、使用备用样式，全部失败时抛出异常<br>
+     * 只对图片输出(toImg、PNG、JPG、BMP 等)生效，无 Logo 且对比度足够的纯色样式必定可以识别，不会解析
+     * @param verifier 校验器
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder verify(@NonNull QRCodeVerifier verifier) {
+        this.verifier = verifier;
+        return this;
+    }
+
+    /**
+     * 输出图片后不校验能否识别(默认)
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder noneVerify() {
+        this.verifier = null;
+        return this;
+    }
+
+    /**
+     * 设置输出 PNG 时使用的编码器，可以通过它调整压缩级别和行过滤策略
+     * @param pngWriter PNG 编码器
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder pngWriter(@NonNull PngWriter pngWriter) {
+        this.pngWriter = pngWriter;
+        return this;
+    }
+
     // **** Logo ****
     /**
      * 设置为无 Logo 图片
@@ -300,6 +585,25 @@ public class QRCodeBuilder {
         return this;
     }
 
+    /**
+     * toStr 时使用半高方块字符(▀▄█)，每行文本输出两行块，输出的长度约为默认的四分之一<br>
+     * 此模式下不会使用 {@link #foregroundStr(String)} 和 {@link #backgroundStr(String)}
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder halfBlockStr() {
+        this.halfBlockStr = true;
+        return this;
+    }
+
+    /**
+     * toStr 时每个块输出为 {@link #foregroundStr(String)} 或 {@link #backgroundStr(String)} 的内容(默认)
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeBuilder fullBlockStr() {
+        this.halfBlockStr = false;
+        return this;
+    }
+
     /**
      * 输出为 QRCode
      * @return QRCode 实例
@@ -319,32 +623,167 @@ public class QRCodeBuilder {
     }
 
     /**
-     * 输出为 BitMatrix
-     * @return BitMatrix 实例
+     * 编码二维码<br>
+     * 编码结果不可变且线程安全，需要以多种格式输出同一个二维码时，可以只编码一次
+     * @return 编码完成的二维码
      */
-    private ByteMatrix toBitMatrix() {
-        return this.toQrcode().getMatrix();
+    public QRSymbol encode() {
+        // 缓存的编码结果与边框无关，取出后再设置边框
+        return this.symbolCache.get(this.symbolKey(), k -> QRSymbol.of(this.content, this.toQrcode(), 0)).withBorder(this.borderBlock);
     }
 
     /**
-     * 输出为填充数组
-     * @return 数组，一维为横坐标，二维为纵坐标，值为 true 时应当被填充为前景色，false 时应当被填充为背景色
+     * 编码为结构化追加(Structured Append)序列，用于 QRVersion 40 也放不下的内容<br>
+     * 内容按字符边界拆分为最多 16 个二维码，每个二维码带有序号、总数和整个内容的校验值，支持的扫码器会依次扫描并拼接出完整的内容<br>
+     * 各个二维码使用相同的 QRVersion(未指定时为拆分后个数最少的最小 QRVersion)并行编码；内容能放入一个二维码时，直接返回 {@link #encode()} 的结果
+     * @return 编码完成的二维码序列，按序号排列
+     * @throws RuntimeException 内容过长，拆分后超过 16 个二维码
      */
-    public boolean[][] toArray() {
-        // 获取 BitMatrix
-        ByteMatrix matrix = this.toBitMatrix();
+    public List<QRSymbol> encodeParts() {
+        QRCapacity capacity = QRCapacity.of(this.content, this.charset);
+        boolean fits = this.qrVersion >= 1 && this.qrVersion <= 40
+                ? capacity.fits(Version.getVersionForNumber(this.qrVersion), this.errorCorrectionLevel)
+                : capacity.minVersion(this.errorCorrectionLevel) > 0;
+        if (fits) {
+            return Collections.singletonList(this.encode());
+        }
 
-        // 宽高
-        int width = matrix.getWidth();
+        List<QRSymbol> symbols = StructuredAppend.encode(this.content, this.charset, this.errorCorrectionLevel, this.qrVersion);
+        return symbols.stream().map(symbol -> symbol.withBorder(this.borderBlock)).collect(Collectors.toList());
+    }
 
-        // 生成结果并返回
-        boolean[][] result = new boolean[width + this.borderBlock * 2][width + this.borderBlock * 2];
-        for (int y = 0, posY = this.borderBlock; y < width; y++, posY++) {
-            for (int x = 0, posX = this.borderBlock; x < width; x++, posX++) {
-                result[posY][posX] = (matrix.get(x, y) == 1);
+    /**
+     * 获取编码结果缓存的键
+     * @return 编码结果缓存的键
+     */
+    private SymbolKey symbolKey() {
+        return new SymbolKey(this.content, this.charset, this.errorCorrectionLevel, this.qrVersion);
+    }
+
+    /**
+     * 获取实际输出时用的样式，如指定了随机数种子，则为使用该种子的样式
+     * @return 实际输出时用的样式
+     */
+    private IQRCodeStyle style() {
+        return this.seed == null ? this.style : this.style.withSeed(this.seed);
+    }
+
+    /**
+     * 判断当前的输出结果能否使用缓存
+     * @return 能否使用缓存
+     */
+    private boolean isOutputCacheable() {
+        // 随机样式每次的输出都不同，不能缓存
+        // 校验时必须解析实际输出的图片，且识别失败时输出的是提高容错级别或备用样式后的图片，与缓存键不符，因此也不使用缓存
+        return this.outputCache != OutputCache.none() && this.style().isDeterministic() && this.verifier == null;
+    }
+
+    /**
+     * 通过输出结果的缓存获取图片数据
+     * @param format 输出格式
+     * @param quality 输出格式相关的参数，无此参数时传 0
+     * @param writer 写出图片数据的方法
+     * @return 图片数据
+     */
+    private byte[] cachedOutput(String format, float quality, Lang.ThrowableConsumer<OutputStream> writer) {
+        OutputKey key = new OutputKey(this.symbolKey(), this.borderBlock, this.blockSize, this.foregroundColor, this.backgroundColor,
+                this.style(), this.logoImg, this.logoSize, format, quality);
+        return this.outputCache.get(key, () -> {
+            FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+            writer.wrap().accept(out);
+            return out.toByteArray();
+        });
+    }
+
+    /**
+     * 输出为图片数据的输入流，可以使用缓存时会优先使用缓存
+     * @param format 输出格式
+     * @param quality 输出格式相关的参数，无此参数时传 0
+     * @param writer 写出图片数据的方法
+     * @return 图片数据的输入流
+     */
+    private InputStream output(String format, float quality, Lang.ThrowableConsumer<OutputStream> writer) {
+        if (this.isOutputCacheable()) {
+            return new ByteArrayInputStream(this.cachedOutput(format, quality, writer));
+        }
+
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        writer.wrap().accept(out);
+        return out.toInputStream();
+    }
+
+    /**
+     * 写出图片数据到输出流中，可以使用缓存时会优先使用缓存，否则直接编码到输出流中
+     * @param format 输出格式
+     * @param quality 输出格式相关的参数，无此参数时传 0
+     * @param out 输出流
+     * @param writer 写出图片数据的方法
+     */
+    private void writeOutput(String format, float quality, OutputStream out, Lang.ThrowableConsumer<OutputStream> writer) {
+        if (this.isOutputCacheable()) {
+            byte[] bytes = this.cachedOutput(format, quality, writer);
+            Lang.wrapCode(() -> out.write(bytes));
+        } else {
+            writer.wrap().accept(out);
+        }
+    }
+
+    /**
+     * 获取 PNG 输出格式的缓存键，包含编码器的参数
+     * @return PNG 输出格式的缓存键
+     */
+    private String pngFormatKey() {
+        return "PNG/" + this.pngWriter.getLevel() + "/" + this.pngWriter.getFilter();
+    }
+
+    /**
+     * 写出 PNG 图片到输出流中<br>
+     * 无 Logo 的纯色样式会直接从填充矩阵输出 1 位的 PNG，不再生成 BufferedImage<br>
+     * 设置了校验器时，只有无需解析即可确认能识别的图片才会这样输出，其他图片需要先绘制出来校验
+     * @param out 输出流
+     * @throws IOException 写出失败
+     */
+    private void writePng(OutputStream out) throws IOException {
+        QRCodeVerifier verifier = this.verifier;
+        boolean fromMatrix = verifier == null
+                ? this.style instanceof DefaultQRCodeStyle && this.logoImg == null
+                : this.isTrusted(verifier);
+        if (fromMatrix) {
+            long start = System.nanoTime();
+            this.pngWriter.write(this.toMatrix(), this.blockSize, this.foregroundColor, this.backgroundColor, out);
+            if (verifier != null) {
+                verifier.trusted(System.nanoTime() - start);
+            }
+        } else {
+            try (PooledImage img = this.toPooledImg()) {
+                this.pngWriter.write(img.getImage(), out);
             }
         }
-        return result;
+    }
+
+    /**
+     * 将 JPG 的压缩质量统一后作为缓存的键，范围外的压缩质量都表示不使用压缩
+     * @param quality 压缩质量
+     * @return 统一后的压缩质量
+     */
+    private static float jpgQualityKey(float quality) {
+        return (quality > 0.0f && quality < 1.0f) ? quality : 1.0f;
+    }
+
+    /**
+     * 输出为填充矩阵
+     * @return 包含边框的填充矩阵
+     */
+    public QRMatrix toMatrix() {
+        return this.encode().getMatrix();
+    }
+
+    /**
+     * 输出为填充数组
+     * @return 数组，一维为横坐标，二维为纵坐标，值为 true 时应当被填充为前景色，false 时应当被填充为背景色
+     */
+    public boolean[][] toArray() {
+        return this.toMatrix().toArray();
     }
 
     /**
@@ -352,19 +791,30 @@ public class QRCodeBuilder {
      * @return 字符串
      */
     public String toStr() {
-        // 获取填充数组
-        boolean[][] arr = this.toArray();
+        QRSymbol symbol = this.encode();
+        return this.halfBlockStr ? symbol.toHalfBlockStr() : symbol.toStr(this.foregroundStr, this.backgroundStr);
+    }
 
-        // 生成结果并返回
-        int width = arr.length;
-        StringBuilder sb = new StringBuilder();
-        for (boolean[] xarr : arr) {
-            for (int x = 0; x < width; x++) {
-                sb.append(xarr[x] ? this.backgroundStr : this.foregroundStr);
-            }
-            sb.append('\n');
+    /**
+     * 逐行输出字符串，不会一次性生成整个字符串
+     * @param out 输出的目标，如 StringBuilder、PrintStream
+     */
+    public void writeStrTo(@NonNull Appendable out) {
+        QRSymbol symbol = this.encode();
+        if (this.halfBlockStr) {
+            Lang.wrapCode(() -> symbol.writeHalfBlockStrTo(out));
+        } else {
+            Lang.wrapCode(() -> symbol.writeStrTo(out, this.foregroundStr, this.backgroundStr));
         }
-        return sb.toString();
+    }
+
+    /**
+     * 逐行输出字符串到字符输出流中，输出后会 flush，但不会关闭输出流
+     * @param out 字符输出流
+     */
+    public void writeStrTo(@NonNull Writer out) {
+        this.writeStrTo((Appendable) out);
+        Lang.wrapCode(out::flush);
     }
 
     /**
@@ -372,31 +822,342 @@ public class QRCodeBuilder {
      * @return 图片
      */
     public BufferedImage toImg() {
-        // 生成图片
-        boolean[][] arr = this.toArray();
-        BufferedImage img = this.style.toImg(arr, this.borderBlock, this.blockSize, this.foregroundColor, this.backgroundColor);
-
-        // 如果有 Logo 则画 Logo
-        if (this.logoImg != null) {
-            Graphics2D gs = img.createGraphics();
-
-            // 计算输出位置
-            int startXPos = (int) (((arr.length / 2.0) - (this.logoSize / 2.0)) * this.blockSize);
-            int startYPos = (int) (((arr.length / 2.0) - (this.logoSize / 2.0)) * this.blockSize);
-            int width = this.logoSize * this.blockSize;
-            int height = this.logoSize * this.blockSize;
-
-            // 绘制 Logo 图片
-            gs.drawImage(this.logoImg, startXPos, startYPos, width, height, null);
-
-            // 销毁 Graphics，释放资源
-            // 如果上面的代码出现异常，会导致这行代码无法被调用到
-            // 但 JVM 最终仍会执行这个方法同样的流程去回收资源，因此无需做特殊处理
-            gs.dispose();
+        if (this.verifier != null) {
+            return this.verified(builder -> PooledImage.of(builder.renderImg())).getImage();
+        }
+        return this.renderImg();
+    }
+
+    /**
+     * 绘制图片，不做校验
+     * @return 图片
+     */
+    private BufferedImage renderImg() {
+        return this.encode().toImg(this.style(), this.blockSize, this.foregroundColor, this.backgroundColor, this.logoImg, this.logoSize);
+    }
+
+    /**
+     * 输出为图片，图片从 {@link #renderContext(RenderContext)} 中借出，使用完毕后需要归还<br>
+     * 未设置 renderContext 时，每次都会分配新的图片
+     * @return 借出的图片，建议使用 try-with-resources 归还
+     */
+    public PooledImage toPooledImg() {
+        if (this.verifier != null) {
+            return this.verified(QRCodeBuilder::renderPooledImg);
+        }
+        return this.renderPooledImg();
+    }
+
+    /**
+     * 输出为图片序列，内容过长时会拆分为结构化追加序列，每个二维码一张图片<br>
+     * 与 {@link #toImg()} 相同，返回的图片归调用方所有，不会从 {@link #renderContext(RenderContext)} 中借出<br>
+     * 设置了校验器时会逐张校验，识别失败时只会尝试备用样式，不会提高容错级别(这会改变拆分的结果)
+     * @return 按序号排列的图片
+     * @throws RuntimeException 设置了校验器，且某一张图片的所有尝试都无法识别
+     * @see #encodeParts()
+     */
+    public List<BufferedImage> toImgs() {
+        IQRCodeStyle style = this.style();
+        return this.encodeParts().parallelStream()
+                .map(symbol -> this.verifier != null ? this.verifiedPart(symbol, style) : this.renderPart(symbol, style))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 绘制序列中的一张图片，不做校验
+     * @param symbol 序列中的二维码
+     * @param style 实际输出时用的样式
+     * @return 图片
+     */
+    private BufferedImage renderPart(QRSymbol symbol, IQRCodeStyle style) {
+        return symbol.toImg(style, this.blockSize, this.foregroundColor, this.backgroundColor, this.logoImg, this.logoSize);
+    }
+
+    /**
+     * 绘制序列中的一张图片并通过校验器校验，识别失败时使用备用样式重新绘制
+     * @param symbol 序列中的二维码
+     * @param style 实际输出时用的样式
+     * @return 能识别的图片
+     * @throws RuntimeException 所有尝试都无法识别
+     */
+    private BufferedImage verifiedPart(QRSymbol symbol, IQRCodeStyle style) {
+        QRCodeVerifier verifier = this.verifier;
+
+        long start = System.nanoTime();
+        BufferedImage img = this.renderPart(symbol, style);
+        long nanos = System.nanoTime() - start;
+        if (this.isTrusted(this.style, verifier)) {
+            verifier.trusted(nanos);
+            return img;
+        }
+        verifier.addRenderTime(nanos);
+        if (verifier.skip(symbol.getContent()) || verifier.check(img, this.blockSize, symbol.getContent())) {
+            return img;
+        }
+
+        IQRCodeStyle fallbackStyle = verifier.getFallbackStyle();
+        if (fallbackStyle != null && !fallbackStyle.equals(this.style)) {
+            start = System.nanoTime();
+            img = this.renderPart(symbol, this.seed == null ? fallbackStyle : fallbackStyle.withSeed(this.seed));
+            nanos = System.nanoTime() - start;
+
+            boolean ok;
+            if (this.isTrusted(fallbackStyle, verifier)) {
+                verifier.trusted(nanos);
+                ok = true;
+            } else {
+                verifier.addRenderTime(nanos);
+                ok = verifier.check(img, this.blockSize, symbol.getContent());
+            }
+            if (ok) {
+                verifier.fallback();
+                return img;
+            }
+        }
+
+        verifier.failure();
+        throw Lang.makeThrow("生成的二维码无法识别，content: %s", symbol.getContent());
+    }
+
+    /**
+     * 输出为一张拼版图片，内容过长时会拆分为结构化追加序列，按序号从左到右、从上到下排列，列数为总数的平方根(向上取整)
+     * @return 图片
+     * @see #encodeParts()
+     */
+    public BufferedImage toSheetImg() {
+        return this.toSheetImg(0);
+    }
+
+    /**
+     * 输出为一张拼版图片，内容过长时会拆分为结构化追加序列，按序号从左到右、从上到下排列<br>
+     * 相邻两个二维码之间至少间隔 {@value #SHEET_QUIET_ZONE_BLOCK} 个块，边框不足时会用背景色补足间距
+     * @param columns 列数，小于 1 时为总数的平方根(向上取整)
+     * @return 图片
+     * @see #encodeParts()
+     */
+    public BufferedImage toSheetImg(int columns) {
+        List<BufferedImage> imgs = this.toImgs();
+        int total = imgs.size();
+        if (columns < 1) {
+            columns = (int) Math.ceil(Math.sqrt(total));
+        }
+        columns = Math.min(columns, total);
+        int rows = (total + columns - 1) / columns;
+
+        // 同一序列的二维码大小相同，相邻两个二维码的边框之和不足静区宽度时，用间距补足
+        int width = imgs.get(0).getWidth();
+        int gap = Math.max(SHEET_QUIET_ZONE_BLOCK - this.borderBlock * 2, 0) * this.blockSize;
+        int cell = width + gap;
+        BufferedImage sheet = new BufferedImage(cell * columns - gap, cell * rows - gap, BufferedImage.TYPE_INT_RGB);
+        Graphics2D gs = sheet.createGraphics();
+        gs.setColor(new Color(this.backgroundColor));
+        gs.fillRect(0, 0, sheet.getWidth(), sheet.getHeight());
+        for (int i = 0; i < total; i++) {
+            gs.drawImage(imgs.get(i), i % columns * cell, i / columns * cell, null);
         }
+        gs.dispose();
+        return sheet;
+    }
+
+    /**
+     * 绘制借出的图片，不做校验
+     * @return 借出的图片
+     */
+    private PooledImage renderPooledImg() {
+        return this.encode().toPooledImg(this.renderContext, this.style(), this.blockSize, this.foregroundColor, this.backgroundColor, this.logoImg, this.logoSize);
+    }
+
+    /**
+     * 绘制图片并通过校验器校验，识别失败时依次尝试提高容错级别、使用备用样式
+     * @param renderer 绘制图片的方法
+     * @return 能识别的图片
+     * @throws RuntimeException 所有尝试都无法识别
+     */
+    private PooledImage verified(Function<QRCodeBuilder, PooledImage> renderer) {
+        QRCodeVerifier verifier = this.verifier;
+
+        long start = System.nanoTime();
+        PooledImage img = renderer.apply(this);
+        long nanos = System.nanoTime() - start;
+        if (this.isTrusted(verifier)) {
+            verifier.trusted(nanos);
+            return img;
+        }
+        verifier.addRenderTime(nanos);
+        if (verifier.skip(this.content) || verifier.check(img.getImage(), this.blockSize, this.content)) {
+            return img;
+        }
+        img.close();
+
+        for (QRCodeBuilder fallback : this.fallbacks(verifier)) {
+            start = System.nanoTime();
+            try {
+                img = renderer.apply(fallback);
+            } catch (RuntimeException e) {
+                // 提高容错级别后，指定的 QRVersion 可能已经放不下内容
+                if (e.getCause() instanceof WriterException) continue;
+                throw e;
+            }
+            nanos = System.nanoTime() - start;
+
+            // 重试时不受耗时比例的限制，必须确认能识别
+            if (fallback.isTrusted(verifier)) {
+                verifier.trusted(nanos);
+            } else {
+                verifier.addRenderTime(nanos);
+                if (!verifier.check(img.getImage(), fallback.blockSize, this.content)) {
+                    img.close();
+                    continue;
+                }
+            }
+            verifier.fallback();
+            return img;
+        }
+
+        verifier.failure();
+        throw Lang.makeThrow("生成的二维码无法识别，content: %s", this.content);
+    }
+
+    /**
+     * 判断无需解析即可确认能识别，即无 Logo、前景色与背景色对比度足够且未反色的纯色样式
+     * @param verifier 校验器
+     * @return 是否无需解析即可确认能识别
+     */
+    private boolean isTrusted(QRCodeVerifier verifier) {
+        return this.isTrusted(this.style, verifier);
+    }
+
+    /**
+     * 判断使用指定的样式时，无需解析即可确认能识别
+     * @param style 样式
+     * @param verifier 校验器
+     * @return 是否无需解析即可确认能识别
+     * @see #isTrusted(QRCodeVerifier)
+     */
+    private boolean isTrusted(IQRCodeStyle style, QRCodeVerifier verifier) {
+        return style instanceof DefaultQRCodeStyle && this.logoImg == null
+                && verifier.isTrustedColors(this.foregroundColor, this.backgroundColor);
+    }
+
+    /**
+     * 获取识别失败时依次尝试的 Builder：先使用当前样式依次提高容错级别，再使用备用样式
+     * @param verifier 校验器
+     * @return 依次尝试的 Builder
+     */
+    private List<QRCodeBuilder> fallbacks(QRCodeVerifier verifier) {
+        List<QRCodeBuilder> fallbacks = new ArrayList<>();
+        if (verifier.isRaiseErrorCorrection()) {
+            // ErrorCorrectionLevel 按 L、M、Q、H 的顺序声明
+            ErrorCorrectionLevel[] levels = ErrorCorrectionLevel.values();
+            for (int i = this.errorCorrectionLevel.ordinal() + 1; i < levels.length; i++) {
+                QRCodeBuilder builder = this.withContent(this.content);
+                builder.errorCorrectionLevel = levels[i];
+                fallbacks.add(builder);
+            }
+        }
+        IQRCodeStyle fallbackStyle = verifier.getFallbackStyle();
+        if (fallbackStyle != null && !fallbackStyle.equals(this.style)) {
+            QRCodeBuilder builder = this.withContent(this.content);
+            builder.style = fallbackStyle;
+            fallbacks.add(builder);
+        }
+        return fallbacks;
+    }
+
+    /**
+     * 生成图片并交给 writer 写出，写出后归还图片
+     * @param writer 写出图片的方法
+     * @throws Exception 写出时出现的异常
+     */
+    private void writeImg(Lang.ThrowableConsumer<BufferedImage> writer) throws Exception {
+        try (PooledImage img = this.toPooledImg()) {
+            writer.accept(img.getImage());
+        }
+    }
+
+    /**
+     * 输出为带 ANSI 真彩色转义序列的文本，用于在终端中显示
+     * @return 文本
+     */
+    public String toAnsi() {
+        StringBuilder sb = new StringBuilder();
+        this.writeAnsiTo(sb, AnsiWriter.ColorMode.TRUECOLOR);
+        return sb.toString();
+    }
+
+    /**
+     * 输出带 ANSI 颜色转义序列的文本到终端，使用前景色和背景色，只在颜色变化时才输出转义序列
+     * @param out 输出流，如 System.out
+     * @param mode 颜色模式
+     */
+    public void writeAnsiTo(@NonNull PrintStream out, @NonNull AnsiWriter.ColorMode mode) {
+        this.writeAnsiTo((Appendable) out, mode);
+        out.flush();
+    }
+
+    /**
+     * 输出带 ANSI 真彩色转义序列的文本到终端
+     * @param out 输出流，如 System.out
+     */
+    public void writeAnsiTo(@NonNull PrintStream out) {
+        this.writeAnsiTo(out, AnsiWriter.ColorMode.TRUECOLOR);
+    }
+
+    /**
+     * 输出带 ANSI 颜色转义序列的文本
+     * @param out 输出的目标
+     * @param mode 颜色模式
+     */
+    private void writeAnsiTo(Appendable out, AnsiWriter.ColorMode mode) {
+        QRMatrix matrix = this.toMatrix();
+        Lang.wrapCode(() -> AnsiWriter.write(matrix, this.foregroundColor, this.backgroundColor, mode, out));
+    }
+
+    /**
+     * 输出为 SVG 矢量图<br>
+     * 直接从填充矩阵生成，会使用前景色、背景色、边框和 Logo，但不会使用样式
+     * @return SVG 的内容
+     */
+    public String toSvg() {
+        StringWriter out = new StringWriter();
+        this.writeSvgTo(out);
+        return out.toString();
+    }
+
+    /**
+     * 写出 SVG 矢量图到字符输出流中，不会关闭输出流<br>
+     * 直接从填充矩阵生成，会使用前景色、背景色、边框和 Logo，但不会使用样式
+     * @param out 字符输出流
+     */
+    public void writeSvgTo(@NonNull Writer out) {
+        QRMatrix matrix = this.toMatrix();
+        Lang.wrapCode(() -> SvgWriter.write(matrix, this.blockSize, this.foregroundColor, this.backgroundColor, this.logoImg, this.logoSize, out));
+    }
 
-        // 返回结果
-        return img;
+    /**
+     * 写出 SVG 矢量图(UTF-8)到输出流中，不会关闭输出流<br>
+     * 直接从填充矩阵生成，会使用前景色、背景色、边框和 Logo，但不会使用样式
+     * @param out 输出流
+     */
+    public void writeSvgTo(@NonNull OutputStream out) {
+        QRMatrix matrix = this.toMatrix();
+        Lang.wrapCode(() -> SvgWriter.write(matrix, this.blockSize, this.foregroundColor, this.backgroundColor, this.logoImg, this.logoSize, out));
+    }
+
+    /**
+     * 写出 SVG 矢量图到文件中
+     * @param file 目标文件
+     */
+    public void writeSvgTo(@NonNull File file) {
+        this.writeToFile(file, out -> this.writeSvgTo(out));
+    }
+
+    /**
+     * 写出 SVG 矢量图到文件中
+     * @param path 目标文件的路径
+     */
+    public void writeSvgTo(@NonNull String path) {
+        this.writeSvgTo(new File(path));
     }
 
     /**
@@ -404,12 +1165,7 @@ public class QRCodeBuilder {
      * @return BMP 图片数据的输出流
      */
     public InputStream toBmp() {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            ImageIO.write(this.toImg(), "BMP", out);
-            return new ByteArrayInputStream(out.toByteArray());
-        } catch (IOException e) {
-            throw Lang.wrapThrow(e);
-        }
+        return this.output("BMP", 0, out -> this.writeImg(img -> Images.writeBmp(img, out)));
     }
 
     /**
@@ -418,22 +1174,7 @@ public class QRCodeBuilder {
      * @return JPG 图片数据的输出流
      */
     public InputStream toJpg(float quality) {
-        ImageWriter writer = ImageIO.getImageWritersByFormatName("JPEG").next();
-        ImageWriteParam iwp = writer.getDefaultWriteParam();
-        if (quality > 0.0f && quality < 1.0f) {
-            iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            iwp.setCompressionQuality(quality);
-        }
-
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            writer.setOutput(ImageIO.createImageOutputStream(out));
-            writer.write(null, new IIOImage(this.toImg() ,null,null), iwp);
-            return new ByteArrayInputStream(out.toByteArray());
-        } catch (IOException e) {
-            throw Lang.wrapThrow(e);
-        } finally {
-            writer.dispose();
-        }
+        return this.output("JPG", QRCodeBuilder.jpgQualityKey(quality), out -> this.writeImg(img -> Images.writeJpg(img, out, quality)));
     }
 
     /**
@@ -441,12 +1182,82 @@ public class QRCodeBuilder {
      * @return PNG 图片数据的输出流
      */
     public InputStream toPng() {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            ImageIO.write(this.toImg(), "PNG", out);
-            return new ByteArrayInputStream(out.toByteArray());
-        } catch (IOException e) {
-            throw Lang.wrapThrow(e);
-        }
+        return this.output(this.pngFormatKey(), 0, this::writePng);
+    }
+
+    /**
+     * 写出 BMP 图片到输出流中，不会关闭输出流
+     * @param out 输出流
+     */
+    public void writeBmpTo(@NonNull OutputStream out) {
+        this.writeOutput("BMP", 0, out, o -> this.writeImg(img -> Images.writeBmp(img, o)));
+    }
+
+    /**
+     * 写出 JPG 图片到输出流中，不会关闭输出流
+     * @param out 输出流
+     * @param quality 压缩质量，范围在 0.0 &lt; quality &lt; 1.0 之间，超出范围则不使用压缩
+     */
+    public void writeJpgTo(@NonNull OutputStream out, float quality) {
+        this.writeOutput("JPG", QRCodeBuilder.jpgQualityKey(quality), out, o -> this.writeImg(img -> Images.writeJpg(img, o, quality)));
+    }
+
+    /**
+     * 写出 PNG 图片到输出流中，不会关闭输出流
+     * @param out 输出流
+     */
+    public void writePngTo(@NonNull OutputStream out) {
+        this.writeOutput(this.pngFormatKey(), 0, out, this::writePng);
+    }
+
+    /**
+     * 写出 BMP 图片到通道中，不会关闭通道
+     * @param channel 通道
+     */
+    public void writeBmpTo(@NonNull WritableByteChannel channel) {
+        this.writeBmpTo(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * 写出 JPG 图片到通道中，不会关闭通道
+     * @param channel 通道
+     * @param quality 压缩质量，范围在 0.0 &lt; quality &lt; 1.0 之间，超出范围则不使用压缩
+     */
+    public void writeJpgTo(@NonNull WritableByteChannel channel, float quality) {
+        this.writeJpgTo(Channels.newOutputStream(channel), quality);
+    }
+
+    /**
+     * 写出 PNG 图片到通道中，不会关闭通道
+     * @param channel 通道
+     */
+    public void writePngTo(@NonNull WritableByteChannel channel) {
+        this.writePngTo(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * 写出 BMP 图片到 ByteBuffer 中，从它当前的 position 开始写入
+     * @param buffer 目标 ByteBuffer，剩余空间不足时会抛出 {@link java.nio.BufferOverflowException}
+     */
+    public void writeBmpTo(@NonNull ByteBuffer buffer) {
+        this.writeBmpTo(new ByteBufferOutputStream(buffer));
+    }
+
+    /**
+     * 写出 JPG 图片到 ByteBuffer 中，从它当前的 position 开始写入
+     * @param buffer 目标 ByteBuffer，剩余空间不足时会抛出 {@link java.nio.BufferOverflowException}
+     * @param quality 压缩质量，范围在 0.0 &lt; quality &lt; 1.0 之间，超出范围则不使用压缩
+     */
+    public void writeJpgTo(@NonNull ByteBuffer buffer, float quality) {
+        this.writeJpgTo(new ByteBufferOutputStream(buffer), quality);
+    }
+
+    /**
+     * 写出 PNG 图片到 ByteBuffer 中，从它当前的 position 开始写入
+     * @param buffer 目标 ByteBuffer，剩余空间不足时会抛出 {@link java.nio.BufferOverflowException}
+     */
+    public void writePngTo(@NonNull ByteBuffer buffer) {
+        this.writePngTo(new ByteBufferOutputStream(buffer));
     }
 
     /**
@@ -454,7 +1265,7 @@ public class QRCodeBuilder {
      * @param file 目标文件
      */
     public void writeBmpTo(@NonNull File file) {
-        Lang.wrapCode(() -> ImageIO.write(this.toImg(), "BMP", file));
+        this.writeToFile(file, this::writeBmpTo);
     }
 
     /**
@@ -463,21 +1274,7 @@ public class QRCodeBuilder {
      * @param quality 压缩质量，范围在 0.0 &lt; quality &lt; 1.0 之间，超出范围则不使用压缩
      */
     public void writeJpgTo(@NonNull File file, float quality) {
-        ImageWriter writer = ImageIO.getImageWritersByFormatName("JPEG").next();
-        ImageWriteParam iwp = writer.getDefaultWriteParam();
-        if (quality > 0.0f && quality < 1.0f) {
-            iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            iwp.setCompressionQuality(quality);
-        }
-
-        try {
-            writer.setOutput(ImageIO.createImageOutputStream(file));
-            writer.write(null, new IIOImage(this.toImg() ,null,null), iwp);
-        } catch (IOException e) {
-            throw Lang.wrapThrow(e);
-        } finally {
-            writer.dispose();
-        }
+        this.writeToFile(file, out -> this.writeJpgTo(out, quality));
     }
 
     /**
@@ -485,7 +1282,20 @@ public class QRCodeBuilder {
      * @param file 目标文件
      */
     public void writePngTo(@NonNull File file) {
-        Lang.wrapCode(() -> ImageIO.write(this.toImg(), "PNG", file));
+        this.writeToFile(file, this::writePngTo);
+    }
+
+    /**
+     * 打开文件并写出数据
+     * @param file 目标文件
+     * @param writer 写出数据的方法
+     */
+    private void writeToFile(File file, Consumer<OutputStream> writer) {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            writer.accept(out);
+        } catch (IOException e) {
+            throw Lang.wrapThrow(e);
+        }
     }
 
     /**
@@ -0,0 +1,356 @@
+package org.cat73.qrcode.builder;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
+import org.cat73.qrcode.render.PooledImage;
+import org.cat73.qrcode.render.RenderContext;
+import org.cat73.qrcode.style.DefaultQRCodeStyle;
+import org.cat73.qrcode.style.IQRCodeStyle;
+import org.cat73.qrcode.util.FastByteArrayOutputStream;
+import org.cat73.qrcode.util.Images;
+import org.cat73.qrcode.util.Lang;
+import org.cat73.qrcode.writer.PngWriter;
+import org.cat73.qrcode.writer.SvgWriter;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+/**
+ * 编码完成的二维码<br>
+ * 不可变且线程安全，可以用不同的样式、大小、格式反复输出，而无需重新编码
+ */
+public final class QRSymbol {
+    /**
+     * 内容
+     */
+    private final String content;
+    /**
+     * QRVersion(1 ~ 40)
+     */
+    private final int version;
+    /**
+     * 容错级别
+     */
+    private final ErrorCorrectionLevel errorCorrectionLevel;
+    /**
+     * 掩码编号(0 ~ 7)
+     */
+    private final int maskPattern;
+    /**
+     * 包含边框的填充矩阵
+     */
+    private final QRMatrix matrix;
+
+    /**
+     * 构造一个编码完成的二维码
+     * @param content 内容
+     * @param version QRVersion(1 ~ 40)
+     * @param errorCorrectionLevel 容错级别
+     * @param maskPattern 掩码编号(0 ~ 7)
+     * @param matrix 包含边框的填充矩阵
+     */
+    QRSymbol(@NonNull String content, int version, @NonNull ErrorCorrectionLevel errorCorrectionLevel, int maskPattern, @NonNull QRMatrix matrix) {
+        this.content = content;
+        this.version = version;
+        this.errorCorrectionLevel = errorCorrectionLevel;
+        this.maskPattern = maskPattern;
+        this.matrix = matrix;
+    }
+
+    /**
+     * 通过 zxing 的编码结果构造一个编码完成的二维码
+     * @param content 内容
+     * @param qrcode zxing 的编码结果
+     * @param borderBlock 边框块数
+     * @return 编码完成的二维码
+     */
+    static QRSymbol of(@NonNull String content, @NonNull com.google.zxing.qrcode.encoder.QRCode qrcode, int borderBlock) {
+        return new QRSymbol(content, qrcode.getVersion().getVersionNumber(), qrcode.getECLevel(), qrcode.getMaskPattern(), QRMatrix.of(qrcode.getMatrix(), borderBlock));
+    }
+
+    /**
+     * 获取内容
+     * @return 内容
+     */
+    public String getContent() {
+        return this.content;
+    }
+
+    /**
+     * 获取 QRVersion
+     * @return QRVersion(1 ~ 40)
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * 获取容错级别
+     * @return 容错级别
+     */
+    public ErrorCorrectionLevel getErrorCorrectionLevel() {
+        return this.errorCorrectionLevel;
+    }
+
+    /**
+     * 获取掩码编号
+     * @return 掩码编号(0 ~ 7)
+     */
+    public int getMaskPattern() {
+        return this.maskPattern;
+    }
+
+    /**
+     * 获取包含边框的填充矩阵
+     * @return 填充矩阵
+     */
+    public QRMatrix getMatrix() {
+        return this.matrix;
+    }
+
+    /**
+     * 获取一个边框块数不同的二维码，与当前实例共享填充数据
+     * @param borderBlock 边框块数
+     * @return 编码完成的二维码
+     */
+    public QRSymbol withBorder(int borderBlock) {
+        if (borderBlock == this.matrix.getBorder()) {
+            return this;
+        }
+        return new QRSymbol(this.content, this.version, this.errorCorrectionLevel, this.maskPattern, this.matrix.withBorder(borderBlock));
+    }
+
+    /**
+     * 输出为填充数组
+     * @return 数组，一维为纵坐标，二维为横坐标，值为 true 时应当被填充为前景色，false 时应当被填充为背景色
+     */
+    public boolean[][] toArray() {
+        return this.matrix.toArray();
+    }
+
+    /**
+     * 输出为字符串，通常用于打印到日志中
+     * @param foregroundStr 前景色输出为的内容
+     * @param backgroundStr 背景色输出为的内容
+     * @return 字符串
+     */
+    public String toStr(@NonNull String foregroundStr, @NonNull String backgroundStr) {
+        // 预先算好长度，避免 StringBuilder 反复扩容
+        int width = this.matrix.getWidth();
+        int cellLength = Math.max(foregroundStr.length(), backgroundStr.length());
+        StringBuilder sb = new StringBuilder(width * (width * cellLength + 1));
+        Lang.wrapCode(() -> this.writeStrTo(sb, foregroundStr, backgroundStr));
+        return sb.toString();
+    }
+
+    /**
+     * 逐行输出字符串，不会一次性生成整个字符串
+     * @param out 输出的目标，如 StringBuilder、Writer
+     * @param foregroundStr 前景色输出为的内容
+     * @param backgroundStr 背景色输出为的内容
+     * @throws IOException 输出失败
+     */
+    public void writeStrTo(@NonNull Appendable out, @NonNull String foregroundStr, @NonNull String backgroundStr) throws IOException {
+        int width = this.matrix.getWidth();
+        for (int y = 0; y < width; y++) {
+            // 按连续的块输出，前景色块输出 backgroundStr，与 toStr 的原有行为一致
+            int x = 0;
+            while (x < width) {
+                int dark = this.matrix.nextDark(x, y);
+                for (; x < dark; x++) {
+                    out.append(foregroundStr);
+                }
+                int light = dark < width ? this.matrix.nextLight(dark, y) : width;
+                for (; x < light; x++) {
+                    out.append(backgroundStr);
+                }
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * 输出为半高方块字符组成的字符串，每行文本对应两行块，输出的长度约为 {@link #toStr(String, String)} 的四分之一<br>
+     * 与 toStr 的默认内容一致，前景色块输出为方块，背景色块输出为空格
+     * @return 字符串
+     */
+    public String toHalfBlockStr() {
+        int width = this.matrix.getWidth();
+        StringBuilder sb = new StringBuilder(((width + 1) / 2) * (width + 1));
+        Lang.wrapCode(() -> this.writeHalfBlockStrTo(sb));
+        return sb.toString();
+    }
+
+    /**
+     * 逐行输出半高方块字符组成的字符串，每行文本对应两行块
+     * @param out 输出的目标，如 StringBuilder、Writer
+     * @throws IOException 输出失败
+     */
+    public void writeHalfBlockStrTo(@NonNull Appendable out) throws IOException {
+        int width = this.matrix.getWidth();
+        for (int y = 0; y < width; y += 2) {
+            for (int x = 0; x < width; x++) {
+                // 块数为奇数时，最后一行文本的下半部分视为背景色
+                boolean top = this.matrix.get(x, y);
+                boolean bottom = y + 1 < width && this.matrix.get(x, y + 1);
+                out.append(top ? (bottom ? '\u2588' : '\u2580') : (bottom ? '\u2584' : ' '));
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * 输出为图片
+     * @param style 输出时用的样式
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @return 图片
+     */
+    public BufferedImage toImg(@NonNull IQRCodeStyle style, int blockSize, int foregroundColor, int backgroundColor) {
+        return this.toImg(style, blockSize, foregroundColor, backgroundColor, null, 0);
+    }
+
+    /**
+     * 输出为带 Logo 的图片
+     * @param style 输出时用的样式
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param logoImg Logo 图片，为 null 时不绘制 Logo
+     * @param logoSize Logo 图片大小(块数)
+     * @return 图片
+     */
+    public BufferedImage toImg(@NonNull IQRCodeStyle style, int blockSize, int foregroundColor, int backgroundColor, BufferedImage logoImg, int logoSize) {
+        if (blockSize < 1) throw Lang.makeThrow("blockSize < 1");
+
+        // 生成图片
+        BufferedImage img = style.toImg(this.matrix, blockSize, foregroundColor, backgroundColor);
+        // 如果有 Logo 则画 Logo
+        this.drawLogo(img, blockSize, logoImg, logoSize);
+
+        // 返回结果
+        return img;
+    }
+
+    /**
+     * 输出为带 Logo 的图片，图片从 context 中借出，使用完毕后需要归还<br>
+     * 固定尺寸反复输出时，可以复用之前归还的图片，避免反复分配大图片
+     * @param context 绘制时复用图片的上下文，为 null 时每次都分配新的图片
+     * @param style 输出时用的样式
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param logoImg Logo 图片，为 null 时不绘制 Logo
+     * @param logoSize Logo 图片大小(块数)
+     * @return 借出的图片，建议使用 try-with-resources 归还
+     */
+    public PooledImage toPooledImg(RenderContext context, @NonNull IQRCodeStyle style, int blockSize, int foregroundColor, int backgroundColor, BufferedImage logoImg, int logoSize) {
+        if (context == null) {
+            return PooledImage.of(this.toImg(style, blockSize, foregroundColor, backgroundColor, logoImg, logoSize));
+        }
+        if (blockSize < 1) throw Lang.makeThrow("blockSize < 1");
+
+        int imgWidth = this.matrix.getWidth() * blockSize;
+        PooledImage pooled = context.acquire(imgWidth, imgWidth, BufferedImage.TYPE_INT_RGB);
+        try {
+            style.drawTo(this.matrix, blockSize, foregroundColor, backgroundColor, pooled.getImage());
+            this.drawLogo(pooled.getImage(), blockSize, logoImg, logoSize);
+            return pooled;
+        } catch (RuntimeException e) {
+            pooled.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 在图片中间绘制 Logo
+     * @param img 二维码图片
+     * @param blockSize 块大小(像素)
+     * @param logoImg Logo 图片，为 null 时不绘制 Logo
+     * @param logoSize Logo 图片大小(块数)
+     */
+    private void drawLogo(BufferedImage img, int blockSize, BufferedImage logoImg, int logoSize) {
+        if (logoImg == null) {
+            return;
+        }
+
+        Graphics2D gs = img.createGraphics();
+
+        // 计算输出位置
+        int startXPos = (int) (((this.matrix.getWidth() / 2.0) - (logoSize / 2.0)) * blockSize);
+        int startYPos = (int) (((this.matrix.getWidth() / 2.0) - (logoSize / 2.0)) * blockSize);
+        int width = logoSize * blockSize;
+        int height = logoSize * blockSize;
+
+        // 绘制 Logo 图片
+        gs.drawImage(logoImg, startXPos, startYPos, width, height, null);
+
+        // 销毁 Graphics，释放资源
+        // 如果上面的代码出现异常，会导致这行代码无法被调用到
+        // 但 JVM 最终仍会执行这个方法同样的流程去回收资源，因此无需做特殊处理
+        gs.dispose();
+    }
+
+    /**
+     * 输出为 SVG 矢量图
+     * @param blockSize 块大小(像素)，用于 SVG 的宽高
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @return SVG 的内容
+     */
+    public String toSvg(int blockSize, int foregroundColor, int backgroundColor) {
+        StringWriter out = new StringWriter();
+        Lang.wrapCode(() -> SvgWriter.write(this.matrix, blockSize, foregroundColor, backgroundColor, null, 0, out));
+        return out.toString();
+    }
+
+    /**
+     * 输出为 BMP 图片
+     * @param style 输出时用的样式
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @return BMP 图片数据的输出流
+     */
+    public InputStream toBmp(@NonNull IQRCodeStyle style, int blockSize, int foregroundColor, int backgroundColor) {
+        return Images.toBmp(this.toImg(style, blockSize, foregroundColor, backgroundColor));
+    }
+
+    /**
+     * 输出为 JPG 图片
+     * @param style 输出时用的样式
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param quality 压缩质量，范围在 0.0 &lt; quality &lt; 1.0 之间，超出范围则不使用压缩
+     * @return JPG 图片数据的输出流
+     */
+    public InputStream toJpg(@NonNull IQRCodeStyle style, int blockSize, int foregroundColor, int backgroundColor, float quality) {
+        return Images.toJpg(this.toImg(style, blockSize, foregroundColor, backgroundColor), quality);
+    }
+
+    /**
+     * 输出为 PNG 图片
+     * @param style 输出时用的样式
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @return PNG 图片数据的输出流
+     */
+    public InputStream toPng(@NonNull IQRCodeStyle style, int blockSize, int foregroundColor, int backgroundColor) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        if (style instanceof DefaultQRCodeStyle) {
+            // 纯色样式直接从填充矩阵输出，不再生成 BufferedImage
+            Lang.wrapCode(() -> PngWriter.DEFAULT.write(this.matrix, blockSize, foregroundColor, backgroundColor, out));
+        } else {
+            BufferedImage img = this.toImg(style, blockSize, foregroundColor, backgroundColor);
+            Lang.wrapCode(() -> PngWriter.DEFAULT.write(img, out));
+        }
+        return out.toInputStream();
+    }
+}
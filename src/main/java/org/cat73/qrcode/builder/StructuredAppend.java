@@ -0,0 +1,155 @@
+package org.cat73.qrcode.builder;
+
+import com.google.zxing.common.CharacterSetECI;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.Encoder;
+import org.cat73.qrcode.util.Lang;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 将一个 QRVersion 40 也放不下的内容拆分为结构化追加(Structured Append)序列<br>
+ * 序列最多包含 16 个二维码，每个二维码都带有序号、总数和整个内容的校验值，支持的扫码器会按序号拼接出完整的内容
+ */
+final class StructuredAppend {
+    private StructuredAppend() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 序列中最多包含多少个二维码
+     */
+    static final int MAX_SYMBOLS = 16;
+    /**
+     * 结构化追加头部的位数：模式信息 4 位、序号 4 位、总数 4 位、校验值 8 位
+     */
+    private static final int HEADER_BITS = 4 + 4 + 4 + 8;
+
+    /**
+     * 拆分内容并并行编码
+     * @param content 内容
+     * @param charset 内容编码
+     * @param level 容错级别
+     * @param qrVersion QRVersion，范围 1 ～ 40，如值在范围外，则使用能拆分为最少个数的最小 QRVersion
+     * @return 编码完成的二维码序列，不包含边框
+     * @throws RuntimeException 内容过长，拆分后超过 16 个二维码
+     */
+    static List<QRSymbol> encode(String content, Charset charset, ErrorCorrectionLevel level, int qrVersion) {
+        int version = qrVersion >= 1 && qrVersion <= 40 ? qrVersion : StructuredAppend.chooseVersion(content, charset, level);
+        List<String> parts = version < 0 ? null : StructuredAppend.split(content, charset, level, Version.getVersionForNumber(version));
+        if (parts == null) {
+            throw Lang.makeThrow("内容过长，拆分后超过 %d 个二维码", MAX_SYMBOLS);
+        }
+
+        // 校验值为整个内容编码后所有字节的异或值
+        int parity = 0;
+        for (byte b : content.getBytes(charset)) {
+            parity ^= b;
+        }
+
+        int total = parts.size();
+        int finalParity = parity & 0xFF;
+        return IntStream.range(0, total).parallel()
+                .mapToObj(i -> Lang.wrapCode(() -> QRSymbol.of(parts.get(i), StructuredAppendEncoder.encode(parts.get(i), charset, level,
+                        Version.getVersionForNumber(version), i, total, finalParity), 0)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 选择拆分后二维码个数与 QRVersion 40 相同的最小 QRVersion，使每个二维码尽量小
+     * @param content 内容
+     * @param charset 内容编码
+     * @param level 容错级别
+     * @return QRVersion，QRVersion 40 拆分后也超过 16 个二维码时返回 -1
+     */
+    private static int chooseVersion(String content, Charset charset, ErrorCorrectionLevel level) {
+        List<String> max = StructuredAppend.split(content, charset, level, Version.getVersionForNumber(40));
+        if (max == null) {
+            return -1;
+        }
+
+        // 拆分后的个数随 QRVersion 增大而减少，二分查找
+        int low = 1;
+        int high = 40;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            List<String> parts = StructuredAppend.split(content, charset, level, Version.getVersionForNumber(mid));
+            if (parts != null && parts.size() <= max.size()) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 按指定的 QRVersion 的容量拆分内容<br>
+     * 所有部分都按整个内容的编码模式计算容量，单个部分实际使用的模式只会更省空间
+     * @param content 内容
+     * @param charset 内容编码
+     * @param level 容错级别
+     * @param version QRVersion
+     * @return 拆分后的各个部分，超过 16 个时返回 null
+     */
+    private static List<String> split(String content, Charset charset, ErrorCorrectionLevel level, Version version) {
+        Mode mode = Encoder.chooseMode(content);
+        int countBits = mode.getCharacterCountBits(version);
+        int numDataBytes = version.getTotalCodewords() - version.getECBlocksForLevel(level).getTotalECCodewords();
+
+        // 每个二维码中内容本身可用的位数
+        int bits = numDataBytes * 8 - HEADER_BITS - 4 - countBits;
+        if (mode == Mode.BYTE && CharacterSetECI.getCharacterSetECIByName(charset.name()) != null) {
+            bits -= 4 + 8;
+        }
+        int maxLetters = (1 << countBits) - 1;
+
+        List<String> parts = new ArrayList<>();
+        int length = content.length();
+        if (mode == Mode.NUMERIC || mode == Mode.ALPHANUMERIC) {
+            // 每个字符都是单字节的 ASCII，按固定长度拆分
+            int chars = mode == Mode.NUMERIC
+                    ? bits / 10 * 3 + (bits % 10 >= 7 ? 2 : bits % 10 >= 4 ? 1 : 0)
+                    : bits / 11 * 2 + (bits % 11 >= 6 ? 1 : 0);
+            chars = Math.min(chars, maxLetters);
+            if (chars <= 0 || (length + chars - 1) / chars > MAX_SYMBOLS) {
+                return null;
+            }
+            for (int start = 0; start < length; start += chars) {
+                parts.add(content.substring(start, Math.min(start + chars, length)));
+            }
+            return parts;
+        }
+
+        // BYTE 模式按字符边界拆分，避免一个字符的字节被拆到两个二维码中
+        int maxBytes = Math.min(bits / 8, maxLetters);
+        int start = 0;
+        int bytes = 0;
+        for (int i = 0; i < length; ) {
+            int codePoint = content.codePointAt(i);
+            int next = i + Character.charCount(codePoint);
+            int size = content.substring(i, next).getBytes(charset).length;
+            if (size > maxBytes) {
+                return null;
+            }
+            if (bytes + size > maxBytes) {
+                parts.add(content.substring(start, i));
+                if (parts.size() >= MAX_SYMBOLS) {
+                    return null;
+                }
+                start = i;
+                bytes = 0;
+            }
+            bytes += size;
+            i = next;
+        }
+        parts.add(content.substring(start));
+        return parts;
+    }
+}
@@ -0,0 +1,562 @@
+package org.cat73.qrcode.builder;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.CharacterSetECI;
+import com.google.zxing.common.reedsolomon.GenericGF;
+import com.google.zxing.common.reedsolomon.ReedSolomonEncoder;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+
+import java.nio.charset.Charset;
+
+/**
+ * 编码结构化追加(Structured Append)模式的二维码<br>
+ * zxing 的 Encoder 不支持在数据前插入结构化追加的头部，构建矩阵、选择掩码的 MatrixUtil、MaskUtil 又是包内可见的，
+ * 因此这里只使用 zxing 的公开 API(BitArray、ReedSolomonEncoder、ByteMatrix)实现完整的编码流程，
+ * 除头部外的编码结果与 {@link Encoder#encode(String, ErrorCorrectionLevel, java.util.Map)} 相同
+ */
+final class StructuredAppendEncoder {
+    private StructuredAppendEncoder() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * ALPHANUMERIC 模式的字符表，字符的下标即为它的编码值
+     */
+    private static final String ALPHANUMERIC_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+    /**
+     * 格式信息的 BCH 生成多项式
+     */
+    private static final int TYPE_INFO_POLY = 0x537;
+    /**
+     * 格式信息的掩码
+     */
+    private static final int TYPE_INFO_MASK_PATTERN = 0x5412;
+    /**
+     * 版本信息的 BCH 生成多项式
+     */
+    private static final int VERSION_INFO_POLY = 0x1F25;
+    /**
+     * 左上角格式信息的位置，按从低位到高位的顺序
+     */
+    private static final int[][] TYPE_INFO_COORDINATES = {
+            {8, 0}, {8, 1}, {8, 2}, {8, 3}, {8, 4}, {8, 5}, {8, 7}, {8, 8},
+            {7, 8}, {5, 8}, {4, 8}, {3, 8}, {2, 8}, {1, 8}, {0, 8},
+    };
+    /**
+     * 矩阵中尚未填充的位置的值
+     */
+    private static final byte EMPTY = -1;
+
+    /**
+     * 编码结构化追加序列中的一个二维码
+     * @param content 这个二维码中的内容
+     * @param charset 内容编码
+     * @param ecLevel 容错级别
+     * @param version QRVersion
+     * @param index 在序列中的下标(0 ~ 15)
+     * @param total 序列中二维码的总数(1 ~ 16)
+     * @param parity 整个内容按内容编码编码后所有字节的异或值
+     * @return 编码完成的二维码
+     * @throws WriterException 指定的 QRVersion 放不下内容
+     */
+    static QRCode encode(String content, Charset charset, ErrorCorrectionLevel ecLevel, Version version,
+                         int index, int total, int parity) throws WriterException {
+        if (index < 0 || index >= total || total > StructuredAppend.MAX_SYMBOLS) {
+            throw new WriterException("Invalid structured append index " + index + " of " + total);
+        }
+
+        // 结构化追加头部：模式信息、序号、总数 - 1、校验值
+        BitArray bits = new BitArray();
+        bits.appendBits(Mode.STRUCTURED_APPEND.getBits(), 4);
+        bits.appendBits(index, 4);
+        bits.appendBits(total - 1, 4);
+        bits.appendBits(parity & 0xFF, 8);
+
+        // 以下与 Encoder.encode 相同：ECI、模式信息、长度信息、内容
+        Mode mode = Encoder.chooseMode(content);
+        if (mode == Mode.BYTE) {
+            CharacterSetECI eci = CharacterSetECI.getCharacterSetECIByName(charset.name());
+            if (eci != null) {
+                bits.appendBits(Mode.ECI.getBits(), 4);
+                bits.appendBits(eci.getValue(), 8);
+            }
+        }
+        bits.appendBits(mode.getBits(), 4);
+
+        byte[] bytes = mode == Mode.BYTE ? content.getBytes(charset) : null;
+        int numLetters = bytes != null ? bytes.length : content.length();
+        int countBits = mode.getCharacterCountBits(version);
+        if (numLetters >= (1 << countBits)) {
+            throw new WriterException(numLetters + " is bigger than " + ((1 << countBits) - 1));
+        }
+        bits.appendBits(numLetters, countBits);
+        StructuredAppendEncoder.appendData(content, mode, bytes, bits);
+
+        Version.ECBlocks ecBlocks = version.getECBlocksForLevel(ecLevel);
+        int numDataBytes = version.getTotalCodewords() - ecBlocks.getTotalECCodewords();
+        if (bits.getSize() > numDataBytes * 8) {
+            throw new WriterException("Data too big for requested version");
+        }
+        StructuredAppendEncoder.terminate(numDataBytes, bits);
+        BitArray finalBits = StructuredAppendEncoder.interleaveWithECBytes(bits, numDataBytes, ecBlocks);
+
+        QRCode qrCode = new QRCode();
+        qrCode.setECLevel(ecLevel);
+        qrCode.setMode(mode);
+        qrCode.setVersion(version);
+
+        // 选择惩罚分最低的掩码
+        int dimension = version.getDimensionForVersion();
+        ByteMatrix matrix = new ByteMatrix(dimension, dimension);
+        int bestMaskPattern = -1;
+        int minPenalty = Integer.MAX_VALUE;
+        for (int maskPattern = 0; maskPattern < QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+            StructuredAppendEncoder.buildMatrix(finalBits, ecLevel, version, maskPattern, matrix);
+            int penalty = StructuredAppendEncoder.penalty(matrix);
+            if (penalty < minPenalty) {
+                minPenalty = penalty;
+                bestMaskPattern = maskPattern;
+            }
+        }
+        qrCode.setMaskPattern(bestMaskPattern);
+
+        StructuredAppendEncoder.buildMatrix(finalBits, ecLevel, version, bestMaskPattern, matrix);
+        qrCode.setMatrix(matrix);
+        return qrCode;
+    }
+
+    // **** 数据编码 ****
+
+    /**
+     * 按编码模式写入内容本身
+     * @param content 内容
+     * @param mode 编码模式，只会是 NUMERIC、ALPHANUMERIC 或 BYTE
+     * @param bytes BYTE 模式时按内容编码编码后的内容
+     * @param bits 写入的目标
+     */
+    private static void appendData(String content, Mode mode, byte[] bytes, BitArray bits) {
+        int length = content.length();
+        if (mode == Mode.NUMERIC) {
+            // 每 3 个数字 10 位，剩余 1 个 4 位、2 个 7 位
+            for (int i = 0; i < length; i += 3) {
+                int n = Math.min(3, length - i);
+                bits.appendBits(Integer.parseInt(content.substring(i, i + n)), n * 3 + 1);
+            }
+        } else if (mode == Mode.ALPHANUMERIC) {
+            // 每 2 个字符 11 位，剩余 1 个 6 位
+            for (int i = 0; i < length; i += 2) {
+                int code1 = ALPHANUMERIC_CHARS.indexOf(content.charAt(i));
+                if (i + 1 < length) {
+                    bits.appendBits(code1 * 45 + ALPHANUMERIC_CHARS.indexOf(content.charAt(i + 1)), 11);
+                } else {
+                    bits.appendBits(code1, 6);
+                }
+            }
+        } else {
+            for (byte b : bytes) {
+                bits.appendBits(b & 0xFF, 8);
+            }
+        }
+    }
+
+    /**
+     * 写入终止符，补齐到整字节，再交替填充 0xEC、0x11 直到写满数据容量
+     * @param numDataBytes 数据容量(字节)
+     * @param bits 写入的目标
+     */
+    private static void terminate(int numDataBytes, BitArray bits) {
+        int capacity = numDataBytes * 8;
+        bits.appendBits(0, Math.min(4, capacity - bits.getSize()));
+        int remainder = bits.getSize() & 7;
+        if (remainder > 0) {
+            bits.appendBits(0, 8 - remainder);
+        }
+        for (int i = 0, numPaddingBytes = numDataBytes - bits.getSizeInBytes(); i < numPaddingBytes; i++) {
+            bits.appendBits((i & 1) == 0 ? 0xEC : 0x11, 8);
+        }
+    }
+
+    /**
+     * 按纠错块拆分数据，计算每块的纠错码，再交错排列所有块的数据和纠错码
+     * @param bits 数据
+     * @param numDataBytes 数据容量(字节)
+     * @param ecBlocks 纠错块信息
+     * @return 交错排列后的数据和纠错码
+     */
+    private static BitArray interleaveWithECBytes(BitArray bits, int numDataBytes, Version.ECBlocks ecBlocks) {
+        int numBlocks = ecBlocks.getNumBlocks();
+        int numECBytes = ecBlocks.getECCodewordsPerBlock();
+        byte[] data = new byte[numDataBytes];
+        bits.toBytes(0, data, 0, numDataBytes);
+
+        // 纠错块按数据字节数从少到多排列，每块的纠错码字节数相同
+        int[][] blocks = new int[numBlocks][];
+        int[] blockDataBytes = new int[numBlocks];
+        ReedSolomonEncoder rsEncoder = new ReedSolomonEncoder(GenericGF.QR_CODE_FIELD_256);
+        int block = 0;
+        int offset = 0;
+        int maxDataBytes = 0;
+        for (Version.ECB ecb : ecBlocks.getECBlocks()) {
+            for (int i = 0; i < ecb.getCount(); i++) {
+                int size = ecb.getDataCodewords();
+                int[] toEncode = new int[size + numECBytes];
+                for (int j = 0; j < size; j++) {
+                    toEncode[j] = data[offset + j] & 0xFF;
+                }
+                rsEncoder.encode(toEncode, numECBytes);
+                blocks[block] = toEncode;
+                blockDataBytes[block] = size;
+                block++;
+                offset += size;
+                maxDataBytes = Math.max(maxDataBytes, size);
+            }
+        }
+
+        BitArray result = new BitArray();
+        for (int i = 0; i < maxDataBytes; i++) {
+            for (int j = 0; j < numBlocks; j++) {
+                if (i < blockDataBytes[j]) {
+                    result.appendBits(blocks[j][i], 8);
+                }
+            }
+        }
+        for (int i = 0; i < numECBytes; i++) {
+            for (int j = 0; j < numBlocks; j++) {
+                result.appendBits(blocks[j][blockDataBytes[j] + i], 8);
+            }
+        }
+        return result;
+    }
+
+    // **** 构建矩阵 ****
+
+    /**
+     * 构建填充矩阵：功能图形、格式信息、版本信息和加了掩码的数据，与 zxing 的 MatrixUtil.buildMatrix 相同
+     * @param dataBits 交错排列后的数据和纠错码
+     * @param ecLevel 容错级别
+     * @param version QRVersion
+     * @param maskPattern 掩码编号(0 ~ 7)
+     * @param matrix 填充的目标
+     */
+    private static void buildMatrix(BitArray dataBits, ErrorCorrectionLevel ecLevel, Version version, int maskPattern, ByteMatrix matrix) {
+        matrix.clear(EMPTY);
+        int dimension = matrix.getWidth();
+
+        // 三个定位图案及其分隔符
+        StructuredAppendEncoder.embedFinderPattern(0, 0, matrix);
+        StructuredAppendEncoder.embedFinderPattern(dimension - 8, 0, matrix);
+        StructuredAppendEncoder.embedFinderPattern(0, dimension - 8, matrix);
+        // 左下角定位图案右上方固定的深色块
+        matrix.set(8, dimension - 8, 1);
+        StructuredAppendEncoder.embedAlignmentPatterns(version, matrix);
+        // 时序图案
+        for (int i = 8; i < dimension - 8; i++) {
+            int bit = (i + 1) & 1;
+            if (matrix.get(i, 6) == EMPTY) {
+                matrix.set(i, 6, bit);
+            }
+            if (matrix.get(6, i) == EMPTY) {
+                matrix.set(6, i, bit);
+            }
+        }
+
+        StructuredAppendEncoder.embedTypeInfo(ecLevel, maskPattern, matrix);
+        StructuredAppendEncoder.embedVersionInfo(version, matrix);
+        StructuredAppendEncoder.embedDataBits(dataBits, maskPattern, matrix);
+    }
+
+    /**
+     * 绘制定位图案及其分隔符，即一个 8x8 的区域，定位图案位于靠近矩阵角落的 7x7 中
+     * @param left 区域左上角的横坐标
+     * @param top 区域左上角的纵坐标
+     * @param matrix 填充的目标
+     */
+    private static void embedFinderPattern(int left, int top, ByteMatrix matrix) {
+        // 区域在矩阵右侧或下方时，定位图案向右或向下偏移 1 块
+        int patternLeft = left == 0 ? 0 : left + 1;
+        int patternTop = top == 0 ? 0 : top + 1;
+        for (int y = top; y < top + 8; y++) {
+            for (int x = left; x < left + 8; x++) {
+                int dx = x - patternLeft - 3;
+                int dy = y - patternTop - 3;
+                int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                // 外圈深色、次外圈浅色、中心 3x3 深色，7x7 以外为浅色的分隔符
+                matrix.set(x, y, distance <= 3 && distance != 2 ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * 绘制所有不与定位图案重叠的校正图案
+     * @param version QRVersion
+     * @param matrix 填充的目标
+     */
+    private static void embedAlignmentPatterns(Version version, ByteMatrix matrix) {
+        int[] centers = version.getAlignmentPatternCenters();
+        for (int cy : centers) {
+            for (int cx : centers) {
+                if (matrix.get(cx, cy) != EMPTY) {
+                    continue;
+                }
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        matrix.set(cx + dx, cy + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1 ? 1 : 0);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入格式信息(容错级别和掩码编号)，左上角和右上、左下角各一份
+     * @param ecLevel 容错级别
+     * @param maskPattern 掩码编号(0 ~ 7)
+     * @param matrix 填充的目标
+     */
+    private static void embedTypeInfo(ErrorCorrectionLevel ecLevel, int maskPattern, ByteMatrix matrix) {
+        int typeInfo = (ecLevel.getBits() << 3) | maskPattern;
+        int bits = ((typeInfo << 10) | StructuredAppendEncoder.bchCode(typeInfo, TYPE_INFO_POLY)) ^ TYPE_INFO_MASK_PATTERN;
+
+        int dimension = matrix.getWidth();
+        for (int i = 0; i < 15; i++) {
+            int bit = (bits >> i) & 1;
+            matrix.set(TYPE_INFO_COORDINATES[i][0], TYPE_INFO_COORDINATES[i][1], bit);
+            if (i < 8) {
+                matrix.set(dimension - i - 1, 8, bit);
+            } else {
+                matrix.set(8, dimension - 7 + (i - 8), bit);
+            }
+        }
+    }
+
+    /**
+     * 写入版本信息，只有 QRVersion 7 及以上才有，右上角和左下角各一份
+     * @param version QRVersion
+     * @param matrix 填充的目标
+     */
+    private static void embedVersionInfo(Version version, ByteMatrix matrix) {
+        int versionNumber = version.getVersionNumber();
+        if (versionNumber < 7) {
+            return;
+        }
+        int bits = (versionNumber << 12) | StructuredAppendEncoder.bchCode(versionNumber, VERSION_INFO_POLY);
+
+        int dimension = matrix.getWidth();
+        int bitIndex = 0;
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 3; j++) {
+                int bit = (bits >> bitIndex++) & 1;
+                matrix.set(i, dimension - 11 + j, bit);
+                matrix.set(dimension - 11 + j, i, bit);
+            }
+        }
+    }
+
+    /**
+     * 从右下角开始，以两列为单位上下往返，将数据写入所有尚未填充的位置，并应用掩码
+     * @param dataBits 交错排列后的数据和纠错码
+     * @param maskPattern 掩码编号(0 ~ 7)
+     * @param matrix 填充的目标
+     */
+    private static void embedDataBits(BitArray dataBits, int maskPattern, ByteMatrix matrix) {
+        int dimension = matrix.getWidth();
+        int size = dataBits.getSize();
+        int bitIndex = 0;
+        int direction = -1;
+        int y = dimension - 1;
+        for (int x = dimension - 1; x > 0; x -= 2) {
+            // 跳过纵向的时序图案所在的列
+            if (x == 6) {
+                x--;
+            }
+            for (; y >= 0 && y < dimension; y += direction) {
+                for (int i = 0; i < 2; i++) {
+                    int xx = x - i;
+                    if (matrix.get(xx, y) != EMPTY) {
+                        continue;
+                    }
+                    boolean bit = bitIndex < size && dataBits.get(bitIndex++);
+                    if (StructuredAppendEncoder.isMasked(maskPattern, xx, y)) {
+                        bit = !bit;
+                    }
+                    matrix.set(xx, y, bit);
+                }
+            }
+            direction = -direction;
+            y += direction;
+        }
+    }
+
+    /**
+     * 判断指定的位置是否需要按掩码取反
+     * @param maskPattern 掩码编号(0 ~ 7)
+     * @param x 横坐标
+     * @param y 纵坐标
+     * @return 是否需要取反
+     */
+    private static boolean isMasked(int maskPattern, int x, int y) {
+        int temp;
+        switch (maskPattern) {
+            case 0:
+                return ((y + x) & 1) == 0;
+            case 1:
+                return (y & 1) == 0;
+            case 2:
+                return x % 3 == 0;
+            case 3:
+                return (y + x) % 3 == 0;
+            case 4:
+                return (((y / 2) + (x / 3)) & 1) == 0;
+            case 5:
+                temp = y * x;
+                return (temp & 1) + (temp % 3) == 0;
+            case 6:
+                temp = y * x;
+                return (((temp & 1) + (temp % 3)) & 1) == 0;
+            default:
+                temp = y * x;
+                return (((temp % 3) + ((y + x) & 1)) & 1) == 0;
+        }
+    }
+
+    /**
+     * 计算 BCH 校验码
+     * @param value 原始值
+     * @param poly 生成多项式
+     * @return 校验码
+     */
+    private static int bchCode(int value, int poly) {
+        int polyBits = 32 - Integer.numberOfLeadingZeros(poly);
+        value <<= polyBits - 1;
+        for (int valueBits; (valueBits = 32 - Integer.numberOfLeadingZeros(value)) >= polyBits; ) {
+            value ^= poly << (valueBits - polyBits);
+        }
+        return value;
+    }
+
+    // **** 掩码惩罚分 ****
+
+    /**
+     * 计算填充矩阵的惩罚分，与 zxing 的 MaskUtil 的四条规则相同
+     * @param matrix 填充矩阵
+     * @return 惩罚分，越低越容易识别
+     */
+    private static int penalty(ByteMatrix matrix) {
+        byte[][] array = matrix.getArray();
+        int dimension = matrix.getWidth();
+        int penalty = 0;
+
+        // 规则 1：同一行或列连续 5 个及以上相同颜色的块
+        for (int i = 0; i < dimension; i++) {
+            int horizontalRun = 0;
+            int verticalRun = 0;
+            int prevHorizontal = -1;
+            int prevVertical = -1;
+            for (int j = 0; j < dimension; j++) {
+                if (array[i][j] == prevHorizontal) {
+                    horizontalRun++;
+                } else {
+                    penalty += StructuredAppendEncoder.runPenalty(horizontalRun);
+                    horizontalRun = 1;
+                    prevHorizontal = array[i][j];
+                }
+                if (array[j][i] == prevVertical) {
+                    verticalRun++;
+                } else {
+                    penalty += StructuredAppendEncoder.runPenalty(verticalRun);
+                    verticalRun = 1;
+                    prevVertical = array[j][i];
+                }
+            }
+            penalty += StructuredAppendEncoder.runPenalty(horizontalRun) + StructuredAppendEncoder.runPenalty(verticalRun);
+        }
+
+        // 规则 2：2x2 相同颜色的块
+        for (int y = 0; y < dimension - 1; y++) {
+            for (int x = 0; x < dimension - 1; x++) {
+                byte value = array[y][x];
+                if (value == array[y][x + 1] && value == array[y + 1][x] && value == array[y + 1][x + 1]) {
+                    penalty += 3;
+                }
+            }
+        }
+
+        // 规则 3：一侧有 4 个浅色块的 1:1:3:1:1 图案，与定位图案相似
+        for (int y = 0; y < dimension; y++) {
+            byte[] row = array[y];
+            for (int x = 0; x < dimension; x++) {
+                if (x + 6 < dimension && row[x] == 1 && row[x + 1] == 0 && row[x + 2] == 1 && row[x + 3] == 1
+                        && row[x + 4] == 1 && row[x + 5] == 0 && row[x + 6] == 1
+                        && (StructuredAppendEncoder.isLightRow(row, x - 4, x) || StructuredAppendEncoder.isLightRow(row, x + 7, x + 11))) {
+                    penalty += 40;
+                }
+                if (y + 6 < dimension && array[y][x] == 1 && array[y + 1][x] == 0 && array[y + 2][x] == 1 && array[y + 3][x] == 1
+                        && array[y + 4][x] == 1 && array[y + 5][x] == 0 && array[y + 6][x] == 1
+                        && (StructuredAppendEncoder.isLightColumn(array, x, y - 4, y) || StructuredAppendEncoder.isLightColumn(array, x, y + 7, y + 11))) {
+                    penalty += 40;
+                }
+            }
+        }
+
+        // 规则 4：深色块的比例偏离 50%，每偏离 5% 计 10 分
+        int numDark = 0;
+        for (byte[] row : array) {
+            for (byte value : row) {
+                if (value == 1) {
+                    numDark++;
+                }
+            }
+        }
+        int numTotal = dimension * dimension;
+        penalty += Math.abs(numDark * 2 - numTotal) * 10 / numTotal * 10;
+        return penalty;
+    }
+
+    /**
+     * 计算规则 1 中一段连续相同颜色的块的惩罚分
+     * @param run 连续的块数
+     * @return 惩罚分
+     */
+    private static int runPenalty(int run) {
+        return run >= 5 ? 3 + (run - 5) : 0;
+    }
+
+    /**
+     * 判断一行中指定范围内是否均为浅色块，超出矩阵的部分视为浅色
+     * @param row 行
+     * @param from 起始横坐标(包含)
+     * @param to 结束横坐标(不包含)
+     * @return 是否均为浅色块
+     */
+    private static boolean isLightRow(byte[] row, int from, int to) {
+        for (int i = Math.max(from, 0), end = Math.min(to, row.length); i < end; i++) {
+            if (row[i] == 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断一列中指定范围内是否均为浅色块，超出矩阵的部分视为浅色
+     * @param array 矩阵
+     * @param x 横坐标
+     * @param from 起始纵坐标(包含)
+     * @param to 结束纵坐标(不包含)
+     * @return 是否均为浅色块
+     */
+    private static boolean isLightColumn(byte[][] array, int x, int from, int to) {
+        for (int i = Math.max(from, 0), end = Math.min(to, array.length); i < end; i++) {
+            if (array[i][x] == 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package org.cat73.qrcode.cache;
+
+/**
+ * 缓存的统计信息快照
+ */
+public final class CacheStats {
+    /**
+     * 命中次数
+     */
+    private final long hitCount;
+    /**
+     * 未命中次数
+     */
+    private final long missCount;
+    /**
+     * 被淘汰的条目数
+     */
+    private final long evictionCount;
+    /**
+     * 当前的条目数
+     */
+    private final int size;
+    /**
+     * 当前的总权重
+     */
+    private final long weight;
+
+    /**
+     * 构造一个统计信息快照
+     * @param hitCount 命中次数
+     * @param missCount 未命中次数
+     * @param evictionCount 被淘汰的条目数
+     * @param size 当前的条目数
+     * @param weight 当前的总权重
+     */
+    public CacheStats(long hitCount, long missCount, long evictionCount, int size, long weight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.weight = weight;
+    }
+
+    /**
+     * 空缓存的统计信息
+     */
+    static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0);
+
+    /**
+     * 获取命中次数
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * 获取未命中次数
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * 获取被淘汰的条目数
+     * @return 被淘汰的条目数
+     */
+    public long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * 获取当前的条目数
+     * @return 当前的条目数
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * 获取当前的总权重
+     * @return 当前的总权重
+     */
+    public long getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * 获取命中率
+     * @return 命中率(0.0 ~ 1.0)，没有任何请求时为 0.0
+     */
+    public double getHitRate() {
+        long total = this.hitCount + this.missCount;
+        return total == 0 ? 0.0 : (double) this.hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{hit=%d, miss=%d, eviction=%d, size=%d, weight=%d}", this.hitCount, this.missCount, this.evictionCount, this.size, this.weight);
+    }
+}
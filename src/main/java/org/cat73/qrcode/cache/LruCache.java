@@ -0,0 +1,154 @@
+package org.cat73.qrcode.cache;
+
+import lombok.NonNull;
+import org.cat73.qrcode.util.Lang;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 线程安全的 LRU 缓存，同时按条目数和总权重淘汰
+ * @param <K> 键的类型
+ * @param <V> 值的类型
+ */
+public final class LruCache<K, V> {
+    /**
+     * 最大条目数
+     */
+    private final int maxEntries;
+    /**
+     * 最大总权重
+     */
+    private final long maxWeight;
+    /**
+     * 计算值的权重的方法
+     */
+    private final ToLongFunction<? super V> weigher;
+    /**
+     * 按访问顺序排列的数据，最久未访问的在最前面
+     */
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    // **** 统计信息，均在持有锁时修改 ****
+    /**
+     * 当前的总权重
+     */
+    private long weight = 0;
+    /**
+     * 命中次数
+     */
+    private long hitCount = 0;
+    /**
+     * 未命中次数
+     */
+    private long missCount = 0;
+    /**
+     * 被淘汰的条目数
+     */
+    private long evictionCount = 0;
+
+    /**
+     * 构造一个 LRU 缓存
+     * @param maxEntries 最大条目数
+     * @param maxWeight 最大总权重，单个值的权重超过它时不会被缓存
+     * @param weigher 计算值的权重的方法
+     */
+    public LruCache(int maxEntries, long maxWeight, @NonNull ToLongFunction<? super V> weigher) {
+        if (maxEntries < 1) throw Lang.makeThrow("maxEntries < 1");
+        if (maxWeight < 1) throw Lang.makeThrow("maxWeight < 1");
+
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 构造一个只按条目数淘汰的 LRU 缓存
+     * @param maxEntries 最大条目数
+     */
+    public LruCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, v -> 0L);
+    }
+
+    /**
+     * 获取缓存的值
+     * @param key 键
+     * @return 缓存的值，如不存在则返回 null
+     */
+    public synchronized V get(@NonNull K key) {
+        V value = this.map.get(key);
+        if (value != null) {
+            this.hitCount++;
+        } else {
+            this.missCount++;
+        }
+        return value;
+    }
+
+    /**
+     * 获取缓存的值，如不存在，则通过 loader 生成并放入缓存<br>
+     * loader 会在锁外执行，并发时同一个键可能会被生成多次，但只有一个结果会留在缓存中
+     * @param key 键
+     * @param loader 生成值的方法，不能返回 null
+     * @return 缓存或新生成的值
+     */
+    public V computeIfAbsent(@NonNull K key, @NonNull Function<? super K, ? extends V> loader) {
+        V value = this.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = loader.apply(key);
+        if (value == null) throw Lang.makeThrow("loader returned null for key: %s", key);
+        this.put(key, value);
+        return value;
+    }
+
+    /**
+     * 将值放入缓存，并淘汰超出限制的条目
+     * @param key 键
+     * @param value 值
+     */
+    public synchronized void put(@NonNull K key, @NonNull V value) {
+        long w = this.weigher.applyAsLong(value);
+        if (w > this.maxWeight) {
+            return;
+        }
+
+        V old = this.map.put(key, value);
+        if (old != null) {
+            this.weight -= this.weigher.applyAsLong(old);
+        }
+        this.weight += w;
+
+        // 从最久未访问的开始淘汰
+        Iterator<Map.Entry<K, V>> it = this.map.entrySet().iterator();
+        while ((this.map.size() > this.maxEntries || this.weight > this.maxWeight) && it.hasNext()) {
+            Map.Entry<K, V> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue;
+
+            this.weight -= this.weigher.applyAsLong(eldest.getValue());
+            it.remove();
+            this.evictionCount++;
+        }
+    }
+
+    /**
+     * 清空缓存，统计信息会保留
+     */
+    public synchronized void clear() {
+        this.map.clear();
+        this.weight = 0;
+    }
+
+    /**
+     * 获取统计信息
+     * @return 统计信息的快照
+     */
+    public synchronized CacheStats stats() {
+        return new CacheStats(this.hitCount, this.missCount, this.evictionCount, this.map.size(), this.weight);
+    }
+}
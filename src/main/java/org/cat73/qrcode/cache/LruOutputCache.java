@@ -0,0 +1,39 @@
+package org.cat73.qrcode.cache;
+
+import lombok.NonNull;
+
+import java.util.function.Supplier;
+
+/**
+ * 基于 {@link LruCache} 的实现，按字节数限制总大小
+ */
+final class LruOutputCache implements OutputCache {
+    /**
+     * 缓存的数据
+     */
+    private final LruCache<OutputKey, byte[]> cache;
+
+    /**
+     * 构造一个 LRU 缓存
+     * @param maxEntries 最大条目数
+     * @param maxBytes 缓存的输出结果的最大总字节数
+     */
+    LruOutputCache(int maxEntries, long maxBytes) {
+        this.cache = new LruCache<>(maxEntries, maxBytes, bytes -> bytes.length);
+    }
+
+    @Override
+    public byte[] get(@NonNull OutputKey key, @NonNull Supplier<byte[]> renderer) {
+        return this.cache.computeIfAbsent(key, k -> renderer.get());
+    }
+
+    @Override
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+
+    @Override
+    public void clear() {
+        this.cache.clear();
+    }
+}
@@ -0,0 +1,52 @@
+package org.cat73.qrcode.cache;
+
+import lombok.NonNull;
+import org.cat73.qrcode.builder.QRSymbol;
+
+import java.util.function.Function;
+
+/**
+ * 基于 {@link LruCache} 的实现
+ */
+final class LruSymbolCache implements SymbolCache {
+    /**
+     * 缓存的数据
+     */
+    private final LruCache<SymbolKey, QRSymbol> cache;
+
+    /**
+     * 构造一个 LRU 缓存
+     * @param maxEntries 最大条目数
+     * @param maxBytes 缓存的编码结果的最大总大小(字节，估算值)
+     */
+    LruSymbolCache(int maxEntries, long maxBytes) {
+        this.cache = new LruCache<>(maxEntries, maxBytes, LruSymbolCache::weigh);
+    }
+
+    /**
+     * 估算编码结果占用的内存大小
+     * @param symbol 编码结果
+     * @return 占用的内存大小(字节)
+     */
+    private static long weigh(QRSymbol symbol) {
+        int size = symbol.getMatrix().getSize();
+        long matrixBytes = (long) ((size + 63) >>> 6) * size * 8;
+        long contentBytes = (long) symbol.getContent().length() * 2;
+        return matrixBytes + contentBytes + 128;
+    }
+
+    @Override
+    public QRSymbol get(@NonNull SymbolKey key, @NonNull Function<SymbolKey, QRSymbol> encoder) {
+        return this.cache.computeIfAbsent(key, encoder);
+    }
+
+    @Override
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+
+    @Override
+    public void clear() {
+        this.cache.clear();
+    }
+}
@@ -0,0 +1,32 @@
+package org.cat73.qrcode.cache;
+
+import lombok.NonNull;
+
+import java.util.function.Supplier;
+
+/**
+ * 不进行任何缓存的实现
+ */
+final class NoneOutputCache implements OutputCache {
+    /**
+     * 单例
+     */
+    static final NoneOutputCache INSTANCE = new NoneOutputCache();
+
+    private NoneOutputCache() {
+    }
+
+    @Override
+    public byte[] get(@NonNull OutputKey key, @NonNull Supplier<byte[]> renderer) {
+        return renderer.get();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return CacheStats.EMPTY;
+    }
+
+    @Override
+    public void clear() {
+    }
+}
@@ -0,0 +1,33 @@
+package org.cat73.qrcode.cache;
+
+import lombok.NonNull;
+import org.cat73.qrcode.builder.QRSymbol;
+
+import java.util.function.Function;
+
+/**
+ * 不进行任何缓存的实现
+ */
+final class NoneSymbolCache implements SymbolCache {
+    /**
+     * 单例
+     */
+    static final NoneSymbolCache INSTANCE = new NoneSymbolCache();
+
+    private NoneSymbolCache() {
+    }
+
+    @Override
+    public QRSymbol get(@NonNull SymbolKey key, @NonNull Function<SymbolKey, QRSymbol> encoder) {
+        return encoder.apply(key);
+    }
+
+    @Override
+    public CacheStats stats() {
+        return CacheStats.EMPTY;
+    }
+
+    @Override
+    public void clear() {
+    }
+}
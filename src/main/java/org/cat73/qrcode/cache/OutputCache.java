@@ -0,0 +1,49 @@
+package org.cat73.qrcode.cache;
+
+import lombok.NonNull;
+
+import java.util.function.Supplier;
+
+/**
+ * 输出结果(编码后的图片数据)的缓存<br>
+ * 返回的数组会被多次共享，调用方不能修改其内容<br>
+ * 可以通过 {@link #none()} 禁用缓存，也可以自行实现此接口来替换缓存的实现
+ */
+public interface OutputCache {
+    /**
+     * 获取缓存的输出结果，如不存在，则通过 renderer 生成并放入缓存
+     * @param key 键
+     * @param renderer 生成输出结果的方法
+     * @return 输出结果
+     */
+    byte[] get(@NonNull OutputKey key, @NonNull Supplier<byte[]> renderer);
+
+    /**
+     * 获取统计信息，权重为缓存的总字节数
+     * @return 统计信息的快照
+     */
+    CacheStats stats();
+
+    /**
+     * 清空缓存
+     */
+    void clear();
+
+    /**
+     * 获取不进行任何缓存的实现，每次都会重新生成
+     * @return 不进行任何缓存的实现
+     */
+    static OutputCache none() {
+        return NoneOutputCache.INSTANCE;
+    }
+
+    /**
+     * 构造一个 LRU 缓存
+     * @param maxEntries 最大条目数
+     * @param maxBytes 缓存的输出结果的最大总字节数
+     * @return LRU 缓存
+     */
+    static OutputCache lru(int maxEntries, long maxBytes) {
+        return new LruOutputCache(maxEntries, maxBytes);
+    }
+}
@@ -0,0 +1,121 @@
+package org.cat73.qrcode.cache;
+
+import lombok.NonNull;
+import org.cat73.qrcode.style.IQRCodeStyle;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 输出结果缓存的键，包含所有影响输出结果的参数<br>
+ * 样式按 equals 区分(未覆盖 equals 的样式即按实例区分)，Logo 图片按实例(而非内容)区分，修改已经用于输出的 Logo 图片的内容后，需要清空缓存
+ */
+public final class OutputKey {
+    /**
+     * 编码参数
+     */
+    private final SymbolKey symbolKey;
+    /**
+     * 边框块数
+     */
+    private final int borderBlock;
+    /**
+     * 块大小(像素)
+     */
+    private final int blockSize;
+    /**
+     * 前景色(RGB)
+     */
+    private final int foregroundColor;
+    /**
+     * 背景色(RGB)
+     */
+    private final int backgroundColor;
+    /**
+     * 样式
+     */
+    private final IQRCodeStyle style;
+    /**
+     * Logo 图片
+     */
+    private final BufferedImage logoImg;
+    /**
+     * Logo 图片大小(块数)
+     */
+    private final int logoSize;
+    /**
+     * 输出格式，如 PNG
+     */
+    private final String format;
+    /**
+     * 输出格式相关的参数，如 JPG 的压缩质量
+     */
+    private final float quality;
+
+    /**
+     * 构造一个输出结果缓存的键
+     * @param symbolKey 编码参数
+     * @param borderBlock 边框块数
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param style 样式
+     * @param logoImg Logo 图片，可以为 null
+     * @param logoSize Logo 图片大小(块数)
+     * @param format 输出格式，如 PNG
+     * @param quality 输出格式相关的参数，如 JPG 的压缩质量，无此参数时传 0
+     */
+    public OutputKey(@NonNull SymbolKey symbolKey, int borderBlock, int blockSize, int foregroundColor, int backgroundColor,
+                     @NonNull IQRCodeStyle style, BufferedImage logoImg, int logoSize, @NonNull String format, float quality) {
+        this.symbolKey = symbolKey;
+        this.borderBlock = borderBlock;
+        this.blockSize = blockSize;
+        this.foregroundColor = foregroundColor;
+        this.backgroundColor = backgroundColor;
+        this.style = style;
+        this.logoImg = logoImg;
+        this.logoSize = logoImg == null ? 0 : logoSize;
+        this.format = format;
+        this.quality = quality;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OutputKey)) return false;
+
+        OutputKey other = (OutputKey) o;
+        return this.borderBlock == other.borderBlock
+                && this.blockSize == other.blockSize
+                && this.foregroundColor == other.foregroundColor
+                && this.backgroundColor == other.backgroundColor
+                && this.style.equals(other.style)
+                && this.logoImg == other.logoImg
+                && this.logoSize == other.logoSize
+                && Float.compare(this.quality, other.quality) == 0
+                && this.format.equals(other.format)
+                && this.symbolKey.equals(other.symbolKey);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.symbolKey.hashCode();
+        result = result * 31 + this.borderBlock;
+        result = result * 31 + this.blockSize;
+        result = result * 31 + this.foregroundColor;
+        result = result * 31 + this.backgroundColor;
+        result = result * 31 + this.style.hashCode();
+        result = result * 31 + System.identityHashCode(this.logoImg);
+        result = result * 31 + this.logoSize;
+        result = result * 31 + this.format.hashCode();
+        result = result * 31 + Float.floatToIntBits(this.quality);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OutputKey{%s, borderBlock=%d, blockSize=%d, foregroundColor=%06X, backgroundColor=%06X, style=%s, logoImg=%s, logoSize=%d, format=%s, quality=%s}",
+                this.symbolKey, this.borderBlock, this.blockSize, this.foregroundColor, this.backgroundColor,
+                this.style.getClass().getSimpleName(), this.logoImg == null ? "null" : Integer.toHexString(System.identityHashCode(this.logoImg)),
+                this.logoSize, this.format, this.quality);
+    }
+}
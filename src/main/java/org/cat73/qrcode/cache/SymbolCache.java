@@ -0,0 +1,49 @@
+package org.cat73.qrcode.cache;
+
+import lombok.NonNull;
+import org.cat73.qrcode.builder.QRSymbol;
+
+import java.util.function.Function;
+
+/**
+ * 编码结果的缓存<br>
+ * 可以通过 {@link #none()} 禁用缓存，也可以自行实现此接口来替换缓存的实现
+ */
+public interface SymbolCache {
+    /**
+     * 获取缓存的编码结果，如不存在，则通过 encoder 编码并放入缓存
+     * @param key 键
+     * @param encoder 编码的方法
+     * @return 编码结果
+     */
+    QRSymbol get(@NonNull SymbolKey key, @NonNull Function<SymbolKey, QRSymbol> encoder);
+
+    /**
+     * 获取统计信息
+     * @return 统计信息的快照
+     */
+    CacheStats stats();
+
+    /**
+     * 清空缓存
+     */
+    void clear();
+
+    /**
+     * 获取不进行任何缓存的实现，每次都会重新编码
+     * @return 不进行任何缓存的实现
+     */
+    static SymbolCache none() {
+        return NoneSymbolCache.INSTANCE;
+    }
+
+    /**
+     * 构造一个 LRU 缓存
+     * @param maxEntries 最大条目数
+     * @param maxBytes 缓存的编码结果的最大总大小(字节，估算值)
+     * @return LRU 缓存
+     */
+    static SymbolCache lru(int maxEntries, long maxBytes) {
+        return new LruSymbolCache(maxEntries, maxBytes);
+    }
+}
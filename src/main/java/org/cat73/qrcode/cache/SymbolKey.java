@@ -0,0 +1,100 @@
+package org.cat73.qrcode.cache;
+
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import lombok.NonNull;
+
+import java.nio.charset.Charset;
+
+/**
+ * 编码结果缓存的键，包含所有影响编码结果的参数
+ */
+public final class SymbolKey {
+    /**
+     * 内容
+     */
+    private final String content;
+    /**
+     * 内容编码
+     */
+    private final Charset charset;
+    /**
+     * 容错级别
+     */
+    private final ErrorCorrectionLevel errorCorrectionLevel;
+    /**
+     * QRVersion(1 ~ 40)，0 为自适应
+     */
+    private final int qrVersion;
+
+    /**
+     * 构造一个编码结果缓存的键
+     * @param content 内容
+     * @param charset 内容编码
+     * @param errorCorrectionLevel 容错级别
+     * @param qrVersion QRVersion(1 ~ 40)，范围外的值均视为自适应
+     */
+    public SymbolKey(@NonNull String content, @NonNull Charset charset, @NonNull ErrorCorrectionLevel errorCorrectionLevel, int qrVersion) {
+        this.content = content;
+        this.charset = charset;
+        this.errorCorrectionLevel = errorCorrectionLevel;
+        this.qrVersion = (qrVersion >= 1 && qrVersion <= 40) ? qrVersion : 0;
+    }
+
+    /**
+     * 获取内容
+     * @return 内容
+     */
+    public String getContent() {
+        return this.content;
+    }
+
+    /**
+     * 获取内容编码
+     * @return 内容编码
+     */
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * 获取容错级别
+     * @return 容错级别
+     */
+    public ErrorCorrectionLevel getErrorCorrectionLevel() {
+        return this.errorCorrectionLevel;
+    }
+
+    /**
+     * 获取 QRVersion
+     * @return QRVersion(1 ~ 40)，0 为自适应
+     */
+    public int getQrVersion() {
+        return this.qrVersion;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SymbolKey)) return false;
+
+        SymbolKey other = (SymbolKey) o;
+        return this.qrVersion == other.qrVersion
+                && this.errorCorrectionLevel == other.errorCorrectionLevel
+                && this.charset.equals(other.charset)
+                && this.content.equals(other.content);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.content.hashCode();
+        result = result * 31 + this.charset.hashCode();
+        result = result * 31 + this.errorCorrectionLevel.hashCode();
+        result = result * 31 + this.qrVersion;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SymbolKey{content=%s, charset=%s, errorCorrectionLevel=%s, qrVersion=%d}", this.content, this.charset, this.errorCorrectionLevel, this.qrVersion);
+    }
+}
@@ -0,0 +1,143 @@
+package org.cat73.qrcode.decoder;
+
+import com.google.zxing.LuminanceSource;
+import lombok.NonNull;
+import org.cat73.qrcode.util.Images;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 基于 BufferedImage 的亮度数据源<br>
+ * 不超过 {@value #MAX_CACHED_PIXELS} 像素的图片，亮度数组和读取像素用的行缓冲区按线程复用，同一线程中只能同时使用一个实例，创建新的实例后旧的实例即失效<br>
+ * 更大的图片(如拍摄的照片)每次都分配新的数组，避免线程长期持有很大的数组
+ */
+final class ImageLuminanceSource extends LuminanceSource {
+    /**
+     * 最多复用多少像素的亮度数组，超出时每次分配新的数组
+     */
+    private static final int MAX_CACHED_PIXELS = 2 * 1024 * 1024;
+    /**
+     * 每个线程复用的亮度数组，长度可能大于 width * height，但不会超过 {@link #MAX_CACHED_PIXELS}
+     */
+    private static final ThreadLocal<byte[]> luminanceBuffer = ThreadLocal.withInitial(() -> new byte[0]);
+    /**
+     * 每个线程复用的像素行缓冲区
+     */
+    private static final ThreadLocal<int[]> rowBuffer = ThreadLocal.withInitial(() -> new int[0]);
+
+    /**
+     * 按行排列的亮度数据
+     */
+    private final byte[] luminances;
+
+    /**
+     * 构造一个亮度数据源的实例
+     * @param luminances 按行排列的亮度数据
+     * @param width 宽度
+     * @param height 高度
+     */
+    private ImageLuminanceSource(byte[] luminances, int width, int height) {
+        super(width, height);
+        this.luminances = luminances;
+    }
+
+    /**
+     * 从图片中读取亮度数据
+     * @param img 图片
+     * @return 亮度数据源
+     */
+    static ImageLuminanceSource of(@NonNull BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+
+        int size = width * height;
+        byte[] luminances;
+        if (size > MAX_CACHED_PIXELS) {
+            luminances = new byte[size];
+        } else {
+            luminances = ImageLuminanceSource.luminanceBuffer.get();
+            if (luminances.length < size) {
+                luminances = new byte[size];
+                ImageLuminanceSource.luminanceBuffer.set(luminances);
+            }
+        }
+
+        int[] pixels = Images.intPixels(img);
+        if (pixels != null) {
+            // INT 类型的图片直接读取像素数组，按行间隔和偏移定位，子图片同样适用
+            int offset = Images.pixelOffset(img);
+            int stride = Images.scanlineStride(img);
+            boolean hasAlpha = img.getType() == BufferedImage.TYPE_INT_ARGB;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0, src = offset + y * stride, dst = y * width; x < width; x++) {
+                    luminances[dst + x] = ImageLuminanceSource.luminance(pixels[src + x], hasAlpha);
+                }
+            }
+        } else {
+            // 行缓冲区最多只有图片宽度那么大，总是复用
+            int[] row = ImageLuminanceSource.rowBuffer.get();
+            if (row.length < width) {
+                row = new int[width];
+                ImageLuminanceSource.rowBuffer.set(row);
+            }
+            for (int y = 0; y < height; y++) {
+                img.getRGB(0, y, width, 1, row, 0, width);
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    luminances[offset + x] = ImageLuminanceSource.luminance(row[x], true);
+                }
+            }
+        }
+
+        return new ImageLuminanceSource(luminances, width, height);
+    }
+
+    /**
+     * 计算一个像素的亮度，完全透明的像素视为白色
+     * @param argb 像素的颜色
+     * @param hasAlpha 是否包含 Alpha 通道
+     * @return 亮度(0 ~ 255)
+     */
+    private static byte luminance(int argb, boolean hasAlpha) {
+        if (hasAlpha && (argb & 0xFF000000) == 0) {
+            return (byte) 0xFF;
+        }
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        // 与 zxing 的 BufferedImageLuminanceSource 相同的加权方式
+        return (byte) ((306 * r + 601 * g + 117 * b + 0x200) >> 10);
+    }
+
+    /**
+     * 获取指定位置的亮度
+     * @param x 横坐标
+     * @param y 纵坐标
+     * @return 亮度(0 ~ 255)
+     */
+    int get(int x, int y) {
+        return this.luminances[y * this.getWidth() + x] & 0xFF;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= this.getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = this.getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        System.arraycopy(this.luminances, y * width, row, 0, width);
+        return row;
+    }
+
+    /**
+     * 获取全部的亮度数据，返回的是内部复用的数组，长度可能大于 width * height，不能修改
+     * @return 按行排列的亮度数据
+     */
+    @Override
+    public byte[] getMatrix() {
+        return this.luminances;
+    }
+}
@@ -0,0 +1,233 @@
+package org.cat73.qrcode.decoder;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ReaderException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.google.zxing.qrcode.decoder.Decoder;
+import lombok.NonNull;
+import org.cat73.qrcode.util.Lang;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 二维码解析工具类<br>
+ * 对于本库生成的纯色二维码图片，会先尝试直接按块的位置读取填充矩阵，省去定位和二值化的开销<br>
+ * 如果失败(如使用了图片样式、经过了缩放或拍照)，再使用 zxing 的 QRCodeReader 进行完整的识别
+ */
+public final class QRCodeDecoder {
+    private QRCodeDecoder() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 完整识别时使用的参数
+     */
+    private static final Map<DecodeHintType, Object> HINTS;
+    static {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        HINTS = Collections.unmodifiableMap(hints);
+    }
+
+    /**
+     * 每个线程复用的 QRCodeReader
+     */
+    private static final ThreadLocal<QRCodeReader> reader = ThreadLocal.withInitial(QRCodeReader::new);
+    /**
+     * 每个线程复用的 Decoder，用于快速识别
+     */
+    private static final ThreadLocal<Decoder> decoder = ThreadLocal.withInitial(Decoder::new);
+    /**
+     * 每个线程复用的填充矩阵，只在尺寸相同时复用
+     */
+    private static final ThreadLocal<BitMatrix> bitMatrix = new ThreadLocal<>();
+
+    /**
+     * 两个颜色的亮度至少相差多少才视为不同的颜色
+     */
+    private static final int MIN_CONTRAST = 32;
+
+    /**
+     * 解析图片中的二维码
+     * @param img 图片
+     * @return 二维码的内容
+     * @throws RuntimeException 图片中没有可识别的二维码
+     */
+    public static String decode(@NonNull BufferedImage img) {
+        return QRCodeDecoder.decode(img, true);
+    }
+
+    /**
+     * 解析图片中的二维码
+     * @param img 图片
+     * @param tryHarder 快速识别失败后，完整识别时是否使用 TRY_HARDER 模式，不使用时识别失败得更快
+     * @return 二维码的内容
+     * @throws RuntimeException 图片中没有可识别的二维码
+     */
+    static String decode(BufferedImage img, boolean tryHarder) {
+        ImageLuminanceSource source = ImageLuminanceSource.of(img);
+
+        // 快速识别，按块的位置直接读取
+        String text = QRCodeDecoder.decodeGrid(source);
+        if (text != null) {
+            return text;
+        }
+
+        // 完整识别
+        try {
+            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+            return QRCodeDecoder.reader.get().decode(bitmap, tryHarder ? HINTS : null).getText();
+        } catch (ReaderException e) {
+            throw Lang.makeThrow("图片中没有可识别的二维码(%s)", e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * 解析图片中的二维码，不会关闭输入流
+     * @param in 图片数据的输入流
+     * @return 二维码的内容
+     * @throws RuntimeException 图片格式无法识别或图片中没有可识别的二维码
+     */
+    public static String decode(@NonNull InputStream in) {
+        return QRCodeDecoder.decode(QRCodeDecoder.read(Lang.wrapCode(() -> ImageIO.read(in))));
+    }
+
+    /**
+     * 解析图片文件中的二维码
+     * @param file 图片文件
+     * @return 二维码的内容
+     * @throws RuntimeException 图片读取失败、图片格式无法识别或图片中没有可识别的二维码
+     */
+    public static String decode(@NonNull File file) {
+        return QRCodeDecoder.decode(QRCodeDecoder.read(Lang.wrapCode(() -> ImageIO.read(file))));
+    }
+
+    /**
+     * 解析图片数据中的二维码，读取 position 到 limit 之间的数据，不会修改 buffer 的 position
+     * @param buffer 图片数据
+     * @return 二维码的内容
+     * @throws RuntimeException 图片格式无法识别或图片中没有可识别的二维码
+     */
+    public static String decode(@NonNull ByteBuffer buffer) {
+        InputStream in;
+        if (buffer.hasArray()) {
+            in = new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            in = new ByteArrayInputStream(data);
+        }
+        return QRCodeDecoder.decode(in);
+    }
+
+    /**
+     * 检查读取到的图片
+     * @param img ImageIO 读取到的图片
+     * @return 图片
+     * @throws RuntimeException 图片格式无法识别
+     */
+    private static BufferedImage read(BufferedImage img) {
+        if (img == null) {
+            throw Lang.makeThrow("无法识别的图片格式");
+        }
+        return img;
+    }
+
+    /**
+     * 快速识别本库生成的纯色二维码<br>
+     * 第一个与背景色不同的像素即为左上角定位图案的左上角，由它的宽度得到块大小和边框宽度，再直接读取每个块中心的颜色
+     * @param source 亮度数据源
+     * @return 二维码的内容，不符合本库生成的二维码的特征或识别失败时返回 null
+     */
+    private static String decodeGrid(ImageLuminanceSource source) {
+        int imgWidth = source.getWidth();
+        if (imgWidth != source.getHeight()) {
+            return null;
+        }
+
+        // 左上角的像素为背景色，查找第一个前景色的像素
+        int background = source.get(0, 0);
+        int left = -1;
+        int top = -1;
+        for (int y = 0; y < imgWidth && left < 0; y++) {
+            for (int x = 0; x < imgWidth; x++) {
+                if (Math.abs(source.get(x, y) - background) >= MIN_CONTRAST) {
+                    left = x;
+                    top = y;
+                    break;
+                }
+            }
+        }
+        // 本库生成的二维码上下左右的边框宽度相同
+        if (left < 0 || left != top) {
+            return null;
+        }
+
+        // 前景色与背景色的中间值作为阈值，前景色比背景色亮时同样可以识别
+        int foreground = source.get(left, top);
+        int threshold = (foreground + background) / 2;
+        boolean darkForeground = foreground < background;
+
+        // 定位图案的宽度为 7 个块
+        int run = 0;
+        while (left + run < imgWidth && QRCodeDecoder.isForeground(source.get(left + run, top), threshold, darkForeground)) {
+            run++;
+        }
+        int blockSize = run / 7;
+        if (blockSize == 0 || run % 7 != 0 || left % blockSize != 0 || imgWidth % blockSize != 0) {
+            return null;
+        }
+
+        // 二维码的尺寸必须是 21 ~ 177 之间的 17 + 4n
+        int size = imgWidth / blockSize - left / blockSize * 2;
+        if (size < 21 || size > 177 || (size - 17) % 4 != 0) {
+            return null;
+        }
+
+        // 读取每个块中心的颜色
+        BitMatrix matrix = QRCodeDecoder.bitMatrix.get();
+        if (matrix == null || matrix.getWidth() != size) {
+            matrix = new BitMatrix(size);
+            QRCodeDecoder.bitMatrix.set(matrix);
+        } else {
+            matrix.clear();
+        }
+        int offset = left + blockSize / 2;
+        for (int y = 0; y < size; y++) {
+            int py = offset + y * blockSize;
+            for (int x = 0; x < size; x++) {
+                if (QRCodeDecoder.isForeground(source.get(offset + x * blockSize, py), threshold, darkForeground)) {
+                    matrix.set(x, y);
+                }
+            }
+        }
+
+        try {
+            return QRCodeDecoder.decoder.get().decode(matrix).getText();
+        } catch (ReaderException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 判断一个像素是否为前景色
+     * @param luminance 像素的亮度
+     * @param threshold 阈值
+     * @param darkForeground 前景色是否比背景色暗
+     * @return 是否为前景色
+     */
+    private static boolean isForeground(int luminance, int threshold, boolean darkForeground) {
+        return darkForeground ? luminance < threshold : luminance > threshold;
+    }
+}
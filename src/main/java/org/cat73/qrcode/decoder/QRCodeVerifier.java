@@ -0,0 +1,374 @@
+package org.cat73.qrcode.decoder;
+
+import lombok.NonNull;
+import org.cat73.qrcode.QRCode;
+import org.cat73.qrcode.style.IQRCodeStyle;
+import org.cat73.qrcode.util.Lang;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 二维码的校验器，在生成图片后立即解析它，确认其内容与生成时的内容相同<br>
+ * 用于 {@link org.cat73.qrcode.builder.QRCodeBuilder#verify(QRCodeVerifier)}，识别失败时 Builder 会依次尝试提高容错级别、使用备用样式<br>
+ * 默认校验每一张图片，可以通过 {@link #maxCostRatio(double)} 限制校验的耗时，超出时跳过的图片可以通过 {@link #getSkippedContents()} 查询<br>
+ * 线程安全，可以在多个线程间共用，统计信息会在所有使用它的 Builder 间累计
+ */
+public final class QRCodeVerifier {
+    /**
+     * 最多记录多少个最近跳过校验的内容
+     */
+    private static final int MAX_SKIPPED_RECORDS = 64;
+
+    // **** 校验参数 ****
+    /**
+     * 解析前缩小到的最小块大小(像素)，块大小超过它的图片会先缩小，以减少解析的开销
+     */
+    private volatile int minBlockSize = 3;
+    /**
+     * 识别失败时，是否依次提高容错级别后重试
+     */
+    private volatile boolean raiseErrorCorrection = true;
+    /**
+     * 识别失败时使用的备用样式，为 null 时不使用备用样式
+     */
+    private volatile IQRCodeStyle fallbackStyle = QRCode.STYLE_DEFAULT;
+    /**
+     * 校验耗时最多占绘制耗时的比例，超出时跳过校验，直到比例重新回到范围内，默认不限制
+     */
+    private volatile double maxCostRatio = Double.POSITIVE_INFINITY;
+    /**
+     * 无 Logo 的纯色样式，前景色比背景色暗至少多少亮度(0 ~ 255)时无需解析即可确认能识别
+     */
+    private volatile int minTrustedContrast = 128;
+
+    // **** 统计信息，均在持有锁时修改 ****
+    /**
+     * 累计的绘制耗时(纳秒)
+     */
+    private long renderNanos = 0;
+    /**
+     * 累计的校验耗时(纳秒)
+     */
+    private long verifyNanos = 0;
+    /**
+     * 解析过的图片数
+     */
+    private long verified = 0;
+    /**
+     * 无需解析即可确认能识别的图片数(无 Logo 的纯色样式)
+     */
+    private long trusted = 0;
+    /**
+     * 因超出耗时比例而跳过校验的图片数
+     */
+    private long skipped = 0;
+    /**
+     * 使用了更高的容错级别或备用样式的图片数
+     */
+    private long fallbacks = 0;
+    /**
+     * 所有尝试都无法识别的图片数
+     */
+    private long failures = 0;
+    /**
+     * 最近跳过校验的内容，按跳过的顺序排列，最多 {@link #MAX_SKIPPED_RECORDS} 个
+     */
+    private final Deque<String> skippedContents = new ArrayDeque<>();
+
+    /**
+     * 设置解析前缩小到的最小块大小(像素)，默认为 3<br>
+     * 块大小超过它的图片会先按整数倍缩小，缩小后的块大小不会小于这个值
+     * @param minBlockSize 最小块大小(像素)
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeVerifier minBlockSize(int minBlockSize) {
+        if (minBlockSize < 1) throw Lang.makeThrow("minBlockSize < 1");
+        this.minBlockSize = minBlockSize;
+        return this;
+    }
+
+    /**
+     * 设置识别失败时，是否依次提高容错级别后重试，默认为 true
+     * @param raiseErrorCorrection 是否提高容错级别后重试
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeVerifier raiseErrorCorrection(boolean raiseErrorCorrection) {
+        this.raiseErrorCorrection = raiseErrorCorrection;
+        return this;
+    }
+
+    /**
+     * 设置识别失败时使用的备用样式，默认为 {@link QRCode#STYLE_DEFAULT}
+     * @param fallbackStyle 备用样式
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeVerifier fallbackStyle(@NonNull IQRCodeStyle fallbackStyle) {
+        this.fallbackStyle = fallbackStyle;
+        return this;
+    }
+
+    /**
+     * 识别失败时不使用备用样式
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeVerifier noneFallbackStyle() {
+        this.fallbackStyle = null;
+        return this;
+    }
+
+    /**
+     * 设置校验耗时最多占绘制耗时的比例，默认为 {@link Double#POSITIVE_INFINITY}，即校验每一张图片<br>
+     * 累计的校验耗时超出累计的绘制耗时的这个比例时，之后的图片会跳过校验，直到比例重新回到范围内<br>
+     * 跳过的图片不保证能识别，可以通过 {@link #getSkippedContents()} 查询最近跳过的内容
+     * @param maxCostRatio 校验耗时最多占绘制耗时的比例
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeVerifier maxCostRatio(double maxCostRatio) {
+        if (!(maxCostRatio > 0)) throw Lang.makeThrow("maxCostRatio <= 0");
+        this.maxCostRatio = maxCostRatio;
+        return this;
+    }
+
+    /**
+     * 设置无 Logo 的纯色样式无需解析即可确认能识别时，前景色至少比背景色暗多少亮度，默认为 128<br>
+     * 对比度不足或前景色比背景色亮(反色)的图片仍会解析
+     * @param minTrustedContrast 最小的亮度差(1 ~ 255)，设置为 256 时总是解析
+     * @return 自身实例，方便链式调用
+     */
+    public QRCodeVerifier minTrustedContrast(int minTrustedContrast) {
+        if (minTrustedContrast < 1 || minTrustedContrast > 256) throw Lang.makeThrow("minTrustedContrast 的范围为 1 ~ 256");
+        this.minTrustedContrast = minTrustedContrast;
+        return this;
+    }
+
+    /**
+     * 识别失败时，是否依次提高容错级别后重试
+     * @return 是否提高容错级别后重试
+     */
+    public boolean isRaiseErrorCorrection() {
+        return this.raiseErrorCorrection;
+    }
+
+    /**
+     * 获取识别失败时使用的备用样式
+     * @return 备用样式，为 null 时不使用备用样式
+     */
+    public IQRCodeStyle getFallbackStyle() {
+        return this.fallbackStyle;
+    }
+
+    /**
+     * 判断无 Logo 的纯色样式使用指定的颜色时，是否无需解析即可确认能识别<br>
+     * 前景色必须比背景色暗，且亮度差不小于 {@link #minTrustedContrast(int)}
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @return 是否无需解析即可确认能识别
+     */
+    public boolean isTrustedColors(int foregroundColor, int backgroundColor) {
+        return QRCodeVerifier.luminance(backgroundColor) - QRCodeVerifier.luminance(foregroundColor) >= this.minTrustedContrast;
+    }
+
+    /**
+     * 记录一次绘制的耗时
+     * @param nanos 绘制耗时(纳秒)
+     */
+    public synchronized void addRenderTime(long nanos) {
+        this.renderNanos += nanos;
+    }
+
+    /**
+     * 判断是否因超出耗时比例而跳过这张图片的校验，跳过时会记录它的内容
+     * @param content 图片的内容
+     * @return 是否跳过校验
+     */
+    public synchronized boolean skip(@NonNull String content) {
+        if (this.verifyNanos <= this.maxCostRatio * this.renderNanos) {
+            return false;
+        }
+        this.skipped++;
+        if (this.skippedContents.size() >= MAX_SKIPPED_RECORDS) {
+            this.skippedContents.removeFirst();
+        }
+        this.skippedContents.addLast(content);
+        return true;
+    }
+
+    /**
+     * 记录一次绘制的耗时，且这张图片无需解析即可确认能识别
+     * @param nanos 绘制耗时(纳秒)
+     */
+    public synchronized void trusted(long nanos) {
+        this.renderNanos += nanos;
+        this.trusted++;
+    }
+
+    /**
+     * 解析图片，判断其内容是否与生成时的内容相同<br>
+     * 生成的图片没有旋转和透视变形，因此会先缩小图片，且不使用 TRY_HARDER 模式，无法识别的图片能尽快被排除
+     * @param img 图片
+     * @param blockSize 图片的块大小(像素)
+     * @param content 生成时的内容
+     * @return 内容是否相同
+     */
+    public boolean check(@NonNull BufferedImage img, int blockSize, @NonNull String content) {
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            ok = content.equals(QRCodeDecoder.decode(QRCodeVerifier.downsample(img, blockSize, this.minBlockSize), false));
+        } catch (RuntimeException e) {
+            ok = false;
+        }
+        long nanos = System.nanoTime() - start;
+
+        synchronized (this) {
+            this.verifyNanos += nanos;
+            this.verified++;
+        }
+        return ok;
+    }
+
+    /**
+     * 记录一次使用更高的容错级别或备用样式后识别成功
+     */
+    public synchronized void fallback() {
+        this.fallbacks++;
+    }
+
+    /**
+     * 记录一次所有尝试都无法识别
+     */
+    public synchronized void failure() {
+        this.failures++;
+    }
+
+    /**
+     * 计算颜色的亮度，与解析时使用的加权方式相同
+     * @param rgb 颜色(RGB)
+     * @return 亮度(0 ~ 255)
+     */
+    private static int luminance(int rgb) {
+        return (306 * ((rgb >> 16) & 0xFF) + 601 * ((rgb >> 8) & 0xFF) + 117 * (rgb & 0xFF) + 0x200) >> 10;
+    }
+
+    /**
+     * 按整数倍缩小图片，缩小后的块大小不小于 minBlockSize，且仍为整数，每个像素取对应区域的平均颜色
+     * @param img 图片
+     * @param blockSize 图片的块大小(像素)
+     * @param minBlockSize 缩小后的最小块大小(像素)
+     * @return 缩小后的图片，无需缩小时返回原图片
+     */
+    private static BufferedImage downsample(BufferedImage img, int blockSize, int minBlockSize) {
+        // 选择能整除块大小的最大倍数，保证缩小后每个块仍然对齐到像素
+        int factor = blockSize / minBlockSize;
+        while (factor > 1 && blockSize % factor != 0) {
+            factor--;
+        }
+        if (factor < 2) {
+            return img;
+        }
+
+        int width = img.getWidth();
+        int smallWidth = width / factor;
+        int smallHeight = img.getHeight() / factor;
+        BufferedImage small = new BufferedImage(smallWidth, smallHeight, BufferedImage.TYPE_INT_RGB);
+
+        int[] rows = new int[width * factor];
+        int[] smallRow = new int[smallWidth];
+        int area = factor * factor;
+        for (int y = 0; y < smallHeight; y++) {
+            img.getRGB(0, y * factor, width, factor, rows, 0, width);
+            for (int x = 0; x < smallWidth; x++) {
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                for (int dy = 0; dy < factor; dy++) {
+                    for (int i = dy * width + x * factor, end = i + factor; i < end; i++) {
+                        int rgb = rows[i];
+                        r += (rgb >> 16) & 0xFF;
+                        g += (rgb >> 8) & 0xFF;
+                        b += rgb & 0xFF;
+                    }
+                }
+                smallRow[x] = ((r / area) << 16) | ((g / area) << 8) | (b / area);
+            }
+            small.setRGB(0, y, smallWidth, 1, smallRow, 0, smallWidth);
+        }
+        return small;
+    }
+
+    /**
+     * 获取累计的绘制耗时
+     * @return 累计的绘制耗时(纳秒)
+     */
+    public synchronized long getRenderNanos() {
+        return this.renderNanos;
+    }
+
+    /**
+     * 获取累计的校验耗时
+     * @return 累计的校验耗时(纳秒)
+     */
+    public synchronized long getVerifyNanos() {
+        return this.verifyNanos;
+    }
+
+    /**
+     * 获取累计的校验耗时占绘制耗时的比例
+     * @return 校验耗时占绘制耗时的比例，尚未绘制时为 0
+     */
+    public synchronized double getCostRatio() {
+        return this.renderNanos == 0 ? 0 : (double) this.verifyNanos / this.renderNanos;
+    }
+
+    /**
+     * 获取解析过的图片数，包括重试时解析的图片
+     * @return 解析过的图片数
+     */
+    public synchronized long getVerifiedCount() {
+        return this.verified;
+    }
+
+    /**
+     * 获取无需解析即可确认能识别的图片数
+     * @return 无需解析即可确认能识别的图片数
+     */
+    public synchronized long getTrustedCount() {
+        return this.trusted;
+    }
+
+    /**
+     * 获取因超出耗时比例而跳过校验的图片数
+     * @return 跳过校验的图片数
+     */
+    public synchronized long getSkippedCount() {
+        return this.skipped;
+    }
+
+    /**
+     * 获取最近跳过校验的内容，最多 {@value #MAX_SKIPPED_RECORDS} 个，可以在空闲时重新生成并校验
+     * @return 最近跳过校验的内容，按跳过的顺序排列
+     */
+    public synchronized List<String> getSkippedContents() {
+        return new ArrayList<>(this.skippedContents);
+    }
+
+    /**
+     * 获取使用了更高的容错级别或备用样式的图片数
+     * @return 使用了更高的容错级别或备用样式的图片数
+     */
+    public synchronized long getFallbackCount() {
+        return this.fallbacks;
+    }
+
+    /**
+     * 获取所有尝试都无法识别的图片数
+     * @return 所有尝试都无法识别的图片数
+     */
+    public synchronized long getFailureCount() {
+        return this.failures;
+    }
+}
@@ -0,0 +1,316 @@
+package org.cat73.qrcode.matrix;
+
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import lombok.NonNull;
+import org.cat73.qrcode.util.Lang;
+
+import java.util.Arrays;
+
+/**
+ * 不可变的二维码填充矩阵<br>
+ * 每个块只占 1 bit，按行保存在 long 数组中，边框部分不实际存储<br>
+ * 所有对外的坐标均包含边框，即范围为 0 ~ {@link #getWidth()} - 1，值为 true 时应当被填充为前景色
+ */
+public final class QRMatrix {
+    /**
+     * 二维码本身的块数(不含边框)
+     */
+    private final int size;
+    /**
+     * 边框块数
+     */
+    private final int border;
+    /**
+     * 每行二维码占用的 long 数量
+     */
+    private final int wordsPerRow;
+    /**
+     * 按行保存的填充数据，第 y 行第 x 块对应 bits[y * wordsPerRow + x / 64] 的第 x % 64 位
+     */
+    private final long[] bits;
+
+    /**
+     * 构造一个填充矩阵的实例
+     * @param size 二维码本身的块数(不含边框)
+     * @param border 边框块数
+     * @param bits 按行保存的填充数据，构造后不应再被修改
+     */
+    private QRMatrix(int size, int border, @NonNull long[] bits) {
+        this.size = size;
+        this.border = border;
+        this.wordsPerRow = QRMatrix.wordsPerRow(size);
+        this.bits = bits;
+    }
+
+    /**
+     * 计算指定宽度的一行需要的 long 数量
+     * @param width 宽度(块数)
+     * @return 需要的 long 数量
+     */
+    private static int wordsPerRow(int width) {
+        return (width + 63) >>> 6;
+    }
+
+    /**
+     * 通过 zxing 的 ByteMatrix 构造填充矩阵
+     * @param matrix zxing 生成的 ByteMatrix
+     * @param border 边框块数
+     * @return 填充矩阵
+     */
+    public static QRMatrix of(@NonNull ByteMatrix matrix, int border) {
+        if (border < 0) throw Lang.makeThrow("border < 0");
+
+        int size = matrix.getWidth();
+        int wordsPerRow = QRMatrix.wordsPerRow(size);
+        long[] bits = new long[wordsPerRow * size];
+        byte[][] arr = matrix.getArray();
+        for (int y = 0; y < size; y++) {
+            byte[] row = arr[y];
+            int base = y * wordsPerRow;
+            for (int x = 0; x < size; x++) {
+                if (row[x] == 1) {
+                    bits[base + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return new QRMatrix(size, border, bits);
+    }
+
+    /**
+     * 通过填充数组构造填充矩阵
+     * @param arr 包含边框的填充数组，一维为纵坐标，二维为横坐标，边框部分的值会被忽略
+     * @param border 边框块数
+     * @return 填充矩阵
+     */
+    public static QRMatrix of(@NonNull boolean[][] arr, int border) {
+        if (border < 0) throw Lang.makeThrow("border < 0");
+        int size = arr.length - border * 2;
+        if (size < 0) throw Lang.makeThrow("border too large: %d", border);
+
+        int wordsPerRow = QRMatrix.wordsPerRow(size);
+        long[] bits = new long[wordsPerRow * size];
+        for (int y = 0; y < size; y++) {
+            boolean[] row = arr[y + border];
+            int base = y * wordsPerRow;
+            for (int x = 0; x < size; x++) {
+                if (row[x + border]) {
+                    bits[base + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return new QRMatrix(size, border, bits);
+    }
+
+    /**
+     * 获取二维码本身的块数(不含边框)
+     * @return 二维码本身的块数
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * 获取边框块数
+     * @return 边框块数
+     */
+    public int getBorder() {
+        return this.border;
+    }
+
+    /**
+     * 获取包含边框的宽高(块数)
+     * @return 包含边框的宽高
+     */
+    public int getWidth() {
+        return this.size + this.border * 2;
+    }
+
+    /**
+     * 获取指定位置的块是否应当被填充为前景色
+     * @param x 横坐标(包含边框)
+     * @param y 纵坐标(包含边框)
+     * @return 是否应当被填充为前景色，边框部分永远为 false
+     */
+    public boolean get(int x, int y) {
+        int width = this.getWidth();
+        if (x < 0 || x >= width || y < 0 || y >= width) throw new IndexOutOfBoundsException(String.format("(%d, %d)", x, y));
+
+        x -= this.border;
+        y -= this.border;
+        if (x < 0 || x >= this.size || y < 0 || y >= this.size) {
+            return false;
+        }
+        return (this.bits[y * this.wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * 获取包含边框时，每行需要的 long 数量，即 {@link #getRowWord(int, int)} 的 index 的范围
+     * @return 每行需要的 long 数量
+     */
+    public int getRowWords() {
+        return QRMatrix.wordsPerRow(this.getWidth());
+    }
+
+    /**
+     * 获取一行中连续的 64 个块<br>
+     * 返回值的第 i 位对应横坐标为 index * 64 + i 的块，超出宽度的部分永远为 0
+     * @param y 纵坐标(包含边框)
+     * @param index 第几个 64 块
+     * @return 这 64 个块的填充数据
+     */
+    public long getRowWord(int y, int index) {
+        if (y < 0 || y >= this.getWidth()) throw new IndexOutOfBoundsException("y: " + y);
+        if (index < 0 || index >= this.getRowWords()) throw new IndexOutOfBoundsException("index: " + index);
+
+        y -= this.border;
+        if (y < 0 || y >= this.size) {
+            return 0L;
+        }
+        return this.symbolBits(y, (index << 6) - this.border);
+    }
+
+    /**
+     * 获取二维码本身(不含边框)的一行中，从指定横坐标开始的 64 个块
+     * @param y 纵坐标(不含边框)
+     * @param from 开始的横坐标(不含边框)，可以为负数或超出宽度，超出部分视为 0
+     * @return 这 64 个块的填充数据
+     */
+    private long symbolBits(int y, int from) {
+        if (from >= this.size || from <= -64) {
+            return 0L;
+        }
+
+        int base = y * this.wordsPerRow;
+        int index = from >> 6; // 负数时向下取整
+        int offset = from & 63;
+        long low = (index >= 0) ? this.bits[base + index] : 0L;
+        if (offset == 0) {
+            return low;
+        }
+        long high = (index + 1 < this.wordsPerRow) ? this.bits[base + index + 1] : 0L;
+        return (low >>> offset) | (high << (64 - offset));
+    }
+
+    /**
+     * 从指定位置开始，查找同一行中下一个应当被填充为前景色的块
+     * @param x 开始的横坐标(包含边框)
+     * @param y 纵坐标(包含边框)
+     * @return 找到的横坐标，如找不到则返回 {@link #getWidth()}
+     */
+    public int nextDark(int x, int y) {
+        return this.next(x, y, false);
+    }
+
+    /**
+     * 从指定位置开始，查找同一行中下一个应当被填充为背景色的块
+     * @param x 开始的横坐标(包含边框)
+     * @param y 纵坐标(包含边框)
+     * @return 找到的横坐标，如找不到则返回 {@link #getWidth()}
+     */
+    public int nextLight(int x, int y) {
+        return this.next(x, y, true);
+    }
+
+    /**
+     * 从指定位置开始，查找同一行中下一个指定颜色的块
+     * @param x 开始的横坐标(包含边框)
+     * @param y 纵坐标(包含边框)
+     * @param light 查找背景色(true)还是前景色(false)
+     * @return 找到的横坐标，如找不到则返回 {@link #getWidth()}
+     */
+    private int next(int x, int y, boolean light) {
+        int width = this.getWidth();
+        if (y < 0 || y >= width) throw new IndexOutOfBoundsException("y: " + y);
+        if (x < 0) x = 0;
+
+        int row = y - this.border;
+        boolean inSymbol = row >= 0 && row < this.size;
+        while (x < width) {
+            long word = inSymbol ? this.symbolBits(row, x - this.border) : 0L;
+            if (light) word = ~word;
+            if (word != 0) {
+                return Math.min(x + Long.numberOfTrailingZeros(word), width);
+            }
+            x += 64;
+        }
+        return width;
+    }
+
+    /**
+     * 遍历指定行中所有连续的前景色块
+     * @param y 纵坐标(包含边框)
+     * @param consumer 回调
+     */
+    public void forEachRun(int y, @NonNull RunConsumer consumer) {
+        int width = this.getWidth();
+        int x = this.nextDark(0, y);
+        while (x < width) {
+            int end = this.nextLight(x, y);
+            consumer.accept(y, x, end);
+            x = this.nextDark(end, y);
+        }
+    }
+
+    /**
+     * 按从上到下、从左到右的顺序遍历所有连续的前景色块
+     * @param consumer 回调
+     */
+    public void forEachRun(@NonNull RunConsumer consumer) {
+        int end = this.border + this.size;
+        for (int y = this.border; y < end; y++) {
+            this.forEachRun(y, consumer);
+        }
+    }
+
+    /**
+     * 获取一个边框块数不同的填充矩阵，与当前实例共享填充数据
+     * @param border 边框块数
+     * @return 填充矩阵
+     */
+    public QRMatrix withBorder(int border) {
+        if (border < 0) throw Lang.makeThrow("border < 0");
+        if (border == this.border) {
+            return this;
+        }
+        return new QRMatrix(this.size, border, this.bits);
+    }
+
+    /**
+     * 转换为填充数组
+     * @return 数组，一维为纵坐标，二维为横坐标，值为 true 时应当被填充为前景色，false 时应当被填充为背景色
+     */
+    public boolean[][] toArray() {
+        int width = this.getWidth();
+        boolean[][] result = new boolean[width][width];
+        this.forEachRun((y, start, end) -> Arrays.fill(result[y], start, end, true));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QRMatrix)) return false;
+
+        QRMatrix other = (QRMatrix) o;
+        return this.size == other.size && this.border == other.border && Arrays.equals(this.bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.size * 31 + this.border) * 31 + Arrays.hashCode(this.bits);
+    }
+
+    /**
+     * 连续前景色块的回调
+     */
+    @FunctionalInterface
+    public interface RunConsumer {
+        /**
+         * 处理一段连续的前景色块
+         * @param y 纵坐标(包含边框)
+         * @param start 开始的横坐标(包含边框，包含此块)
+         * @param end 结束的横坐标(包含边框，不包含此块)
+         */
+        void accept(int y, int start, int end);
+    }
+}
@@ -0,0 +1,63 @@
+package org.cat73.qrcode.render;
+
+import lombok.NonNull;
+import org.cat73.qrcode.util.Lang;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 从 {@link RenderContext} 借出的图片，使用完毕后需要通过 {@link #close()} 归还<br>
+ * 归还后图片可能会被其他调用方复用，因此不能再访问它，也不能将它保存起来
+ */
+public final class PooledImage implements AutoCloseable {
+    /**
+     * 借出图片的上下文，为 null 时图片不属于任何池，归还时不做任何处理
+     */
+    private final RenderContext context;
+    /**
+     * 图片，归还后为 null
+     */
+    private BufferedImage image;
+
+    /**
+     * 构造一个借出的图片
+     * @param context 借出图片的上下文，可以为 null
+     * @param image 图片
+     */
+    PooledImage(RenderContext context, @NonNull BufferedImage image) {
+        this.context = context;
+        this.image = image;
+    }
+
+    /**
+     * 包装一张不属于任何池的图片，归还时不做任何处理
+     * @param image 图片
+     * @return 包装后的图片
+     */
+    public static PooledImage of(@NonNull BufferedImage image) {
+        return new PooledImage(null, image);
+    }
+
+    /**
+     * 获取图片
+     * @return 图片
+     */
+    public BufferedImage getImage() {
+        if (this.image == null) throw Lang.makeThrow("image is released");
+        return this.image;
+    }
+
+    /**
+     * 归还图片，重复调用不会有任何效果
+     */
+    @Override
+    public void close() {
+        BufferedImage image = this.image;
+        if (image != null) {
+            this.image = null;
+            if (this.context != null) {
+                this.context.release(image);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.cat73.qrcode.render;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 绘制时复用图片的上下文<br>
+ * 按宽高和类型缓存归还的图片，固定尺寸反复绘制时几乎不再分配新的图片，避免大图片反复触发 humongous 分配<br>
+ * 线程安全，可以在多个线程间共用
+ */
+public final class RenderContext {
+    /**
+     * 每种尺寸最多缓存多少张图片
+     */
+    private final int maxImagesPerSize;
+    /**
+     * 缓存的图片最多占用多少字节
+     */
+    private final long maxBytes;
+    /**
+     * 按尺寸和类型缓存的图片
+     */
+    private final Map<Long, ArrayDeque<BufferedImage>> pool = new HashMap<>();
+
+    // **** 统计信息，均在持有锁时修改 ****
+    /**
+     * 缓存的图片占用的字节数
+     */
+    private long pooledBytes = 0;
+    /**
+     * 新分配的图片数
+     */
+    private long allocations = 0;
+    /**
+     * 复用的图片数
+     */
+    private long reuses = 0;
+
+    /**
+     * 构造一个绘制时复用图片的上下文
+     * @param maxImagesPerSize 每种尺寸最多缓存多少张图片，通常与并发绘制的线程数相同即可
+     * @param maxBytes 缓存的图片最多占用多少字节，超出时归还的图片会直接被丢弃
+     */
+    public RenderContext(int maxImagesPerSize, long maxBytes) {
+        this.maxImagesPerSize = maxImagesPerSize;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 构造一个绘制时复用图片的上下文，每种尺寸最多缓存 CPU 核数张图片，最多占用 64MiB
+     */
+    public RenderContext() {
+        this(Runtime.getRuntime().availableProcessors(), 64L * 1024 * 1024);
+    }
+
+    /**
+     * 借出一张图片，如没有可复用的图片，则分配一张新的<br>
+     * 复用的图片中会残留上次绘制的内容，调用方需要自行覆盖
+     * @param width 宽度(像素)
+     * @param height 高度(像素)
+     * @param type 图片类型，如 {@link BufferedImage#TYPE_INT_RGB}
+     * @return 借出的图片，使用完毕后需要归还
+     */
+    public PooledImage acquire(int width, int height, int type) {
+        BufferedImage image = null;
+        synchronized (this) {
+            ArrayDeque<BufferedImage> images = this.pool.get(RenderContext.key(width, height, type));
+            if (images != null) {
+                image = images.pollLast();
+            }
+            if (image != null) {
+                this.pooledBytes -= RenderContext.bytes(image);
+                this.reuses++;
+            } else {
+                this.allocations++;
+            }
+        }
+
+        // 在锁外分配，避免大图片的分配阻塞其他线程
+        if (image == null) {
+            image = new BufferedImage(width, height, type);
+        }
+        return new PooledImage(this, image);
+    }
+
+    /**
+     * 归还一张图片
+     * @param image 图片
+     */
+    synchronized void release(BufferedImage image) {
+        long bytes = RenderContext.bytes(image);
+        if (this.pooledBytes + bytes > this.maxBytes) {
+            return;
+        }
+
+        ArrayDeque<BufferedImage> images = this.pool.computeIfAbsent(RenderContext.key(image.getWidth(), image.getHeight(), image.getType()), k -> new ArrayDeque<>());
+        if (images.size() < this.maxImagesPerSize) {
+            images.addLast(image);
+            this.pooledBytes += bytes;
+        }
+    }
+
+    /**
+     * 丢弃所有缓存的图片，统计信息会保留
+     */
+    public synchronized void clear() {
+        this.pool.clear();
+        this.pooledBytes = 0;
+    }
+
+    /**
+     * 获取新分配的图片数
+     * @return 新分配的图片数
+     */
+    public synchronized long getAllocations() {
+        return this.allocations;
+    }
+
+    /**
+     * 获取复用的图片数
+     * @return 复用的图片数
+     */
+    public synchronized long getReuses() {
+        return this.reuses;
+    }
+
+    /**
+     * 获取缓存的图片占用的字节数
+     * @return 缓存的图片占用的字节数
+     */
+    public synchronized long getPooledBytes() {
+        return this.pooledBytes;
+    }
+
+    /**
+     * 计算缓存的键
+     * @param width 宽度(像素)
+     * @param height 高度(像素)
+     * @param type 图片类型
+     * @return 缓存的键
+     */
+    private static Long key(int width, int height, int type) {
+        return ((long) width << 36) | ((long) height << 8) | (type & 0xFF);
+    }
+
+    /**
+     * 估算图片占用的字节数
+     * @param image 图片
+     * @return 图片占用的字节数
+     */
+    private static long bytes(BufferedImage image) {
+        int bits = image.getColorModel().getPixelSize();
+        return (long) image.getWidth() * image.getHeight() * Math.max(bits, 8) / 8;
+    }
+}
@@ -1,8 +1,11 @@
 package org.cat73.qrcode.style;
 
 import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
+import org.cat73.qrcode.util.Images;
 
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 /**
  * 默认的二维码样式 - 纯色样式
@@ -10,38 +13,59 @@ import java.awt.image.BufferedImage;
 public final class DefaultQRCodeStyle implements IQRCodeStyle {
     @Override
     public BufferedImage toImg(@NonNull boolean[][] arr, int borderBlock, int blockSize, int foregroundColor, int backgroundColor) {
-        // 宽高
-        int width = arr.length;
+        // 纯色样式不关心边框，按无边框处理，这样边框中的内容也能原样输出
+        return this.toImg(QRMatrix.of(arr, 0), blockSize, foregroundColor, backgroundColor);
+    }
 
-        // 结果图片
-        BufferedImage image = new BufferedImage(width * blockSize, width * blockSize, BufferedImage.TYPE_INT_RGB);
+    @Override
+    public BufferedImage toImg(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor) {
+        int imgWidth = matrix.getWidth() * blockSize;
+        BufferedImage image = new BufferedImage(imgWidth, imgWidth, BufferedImage.TYPE_INT_RGB);
+        this.fill(matrix, blockSize, foregroundColor, backgroundColor, image);
+        return image;
+    }
 
-        // 填充内容
-        for (int y = 0; y < width; y++) {
-            for (int x = 0; x < width; x++) {
-                boolean foreground = arr[y][x];
-                int color = foreground ? foregroundColor : backgroundColor;
-                this.drawRect(image, x * blockSize, y * blockSize, blockSize, blockSize, color);
-            }
+    @Override
+    public void drawTo(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor, @NonNull BufferedImage target) {
+        if (target.getType() == BufferedImage.TYPE_INT_RGB && Images.intPixels(target) != null) {
+            this.fill(matrix, blockSize, foregroundColor, backgroundColor, target);
+        } else {
+            IQRCodeStyle.super.drawTo(matrix, blockSize, foregroundColor, backgroundColor, target);
         }
-
-        // 返回结果
-        return image;
     }
 
     /**
-     * 将图片的指定区域绘制成指定颜色
-     * @param image 被绘制的图片
-     * @param x 区域开始的横坐标
-     * @param y 区域开始的纵坐标
-     * @param width 区域的宽度
-     * @param height 区域的高度
-     * @param color 绘制的颜色
+     * 直接填充 TYPE_INT_RGB 图片的像素数组
+     * @param matrix 填充矩阵
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param image 目标图片，类型必须为 TYPE_INT_RGB
      */
-    private void drawRect(BufferedImage image, int x, int y, int width, int height, int color) {
-        for (int posX = x + width - 1; posX >= x; posX--) {
-            for (int posY = y + height - 1; posY >= y; posY--) {
-                image.setRGB(posX, posY, color);
+    private void fill(QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor, BufferedImage image) {
+        // 宽高
+        int width = matrix.getWidth();
+        int imgWidth = width * blockSize;
+        // 直接操作图片的像素数组，避免逐像素的 setRGB 经过 ColorModel 转换
+        // 目标图片可能比二维码更宽，也可能是与父图片共用数组的子图片，按数组中的行间隔和偏移定位
+        int[] pixels = Images.intPixels(image);
+        int stride = Images.scanlineStride(image);
+        int offset = Images.pixelOffset(image);
+
+        // TYPE_INT_RGB 不保存 Alpha 通道，与 setRGB 的行为保持一致
+        int fg = foregroundColor & 0x00FFFFFF;
+        int bg = backgroundColor & 0x00FFFFFF;
+
+        // 填充内容
+        for (int y = 0; y < width; y++) {
+            // 每行块的第一行像素，先整行填充背景色，再按连续的前景色块填充前景色
+            int rowStart = offset + y * blockSize * stride;
+            Arrays.fill(pixels, rowStart, rowStart + imgWidth, bg);
+            matrix.forEachRun(y, (yy, start, end) -> Arrays.fill(pixels, rowStart + start * blockSize, rowStart + end * blockSize, fg));
+
+            // 同一行块的其余像素行与第一行完全相同，直接复制
+            for (int i = 1; i < blockSize; i++) {
+                System.arraycopy(pixels, rowStart, pixels, rowStart + i * stride, imgWidth);
             }
         }
     }
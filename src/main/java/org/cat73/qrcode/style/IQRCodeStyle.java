@@ -1,7 +1,9 @@
 package org.cat73.qrcode.style;
 
 import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
 
+import java.awt.*;
 import java.awt.image.BufferedImage;
 
 /**
@@ -18,4 +20,54 @@ public interface IQRCodeStyle {
      * @return 生成的图片，宽高应该等于 块大小 * 块数量
      */
     BufferedImage toImg(@NonNull boolean[][] arr, int borderBlock, int blockSize, int foregroundColor, int backgroundColor);
+
+    /**
+     * 生成二维码图片<br>
+     * 默认实现会将填充矩阵转换为填充数组后调用 {@link #toImg(boolean[][], int, int, int, int)}，实现类可以覆盖此方法以直接使用填充矩阵
+     * @param matrix 填充矩阵
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @return 生成的图片，宽高应该等于 块大小 * 块数量
+     */
+    default BufferedImage toImg(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor) {
+        return this.toImg(matrix.toArray(), matrix.getBorder(), blockSize, foregroundColor, backgroundColor);
+    }
+
+    /**
+     * 将二维码绘制到已有的图片上，用于复用图片(如 {@link org.cat73.qrcode.render.RenderContext})<br>
+     * 会覆盖目标图片左上角 块大小 * 块数量 的区域，目标图片中残留的内容不会影响结果<br>
+     * 默认实现会调用 {@link #toImg(QRMatrix, int, int, int)} 生成新图片后再复制过去，实现类可以覆盖此方法以直接在目标图片上绘制
+     * @param matrix 填充矩阵
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param target 目标图片，宽高至少为 块大小 * 块数量
+     */
+    default void drawTo(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor, @NonNull BufferedImage target) {
+        BufferedImage img = this.toImg(matrix, blockSize, foregroundColor, backgroundColor);
+        Graphics2D gs = target.createGraphics();
+        gs.setComposite(AlphaComposite.Src);
+        gs.drawImage(img, 0, 0, null);
+        gs.dispose();
+    }
+
+    /**
+     * 相同的输入是否总是生成相同的图片<br>
+     * 只有返回 true 的样式，其输出结果才会被缓存
+     * @return 相同的输入是否总是生成相同的图片
+     */
+    default boolean isDeterministic() {
+        return true;
+    }
+
+    /**
+     * 获取使用指定随机数种子的样式，用于让随机选择图片的样式生成可以重现的图片<br>
+     * 不使用随机数的样式直接返回自身
+     * @param seed 随机数种子
+     * @return 使用指定随机数种子的样式
+     */
+    default IQRCodeStyle withSeed(long seed) {
+        return this;
+    }
 }
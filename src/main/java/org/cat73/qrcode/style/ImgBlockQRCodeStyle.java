@@ -3,6 +3,8 @@ package org.cat73.qrcode.style;
 import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.cat73.qrcode.cache.LruCache;
+import org.cat73.qrcode.matrix.QRMatrix;
 import org.cat73.qrcode.util.Lang;
 
 import javax.imageio.ImageIO;
@@ -13,17 +15,14 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntUnaryOperator;
 
 /**
  * 用图片填充 block 的二维码样式
  */
 // TODO 支持非矩形图片(如圆形)
 public final class ImgBlockQRCodeStyle implements IQRCodeStyle {
-    /**
-     * 随机数生成器
-     */
-    private static final Random rand = new Random();
-
     /**
      * 用于替换的图片
      */
@@ -43,6 +42,34 @@ public final class ImgBlockQRCodeStyle implements IQRCodeStyle {
         private final List<BufferedImage> imgs;
     }
 
+    /**
+     * 按块大小缩放好的图片
+     */
+    @RequiredArgsConstructor
+    private static class ScaledImgs {
+        /**
+         * 缩放后的用于替换的图片列表，与 {@link #imgs} 一一对应
+         */
+        private final List<List<BufferedImage>> imgs;
+        /**
+         * 缩放后的码眼图片列表，与 {@link #eyeImgs} 一一对应
+         */
+        private final List<BufferedImage> eyeImgs;
+        /**
+         * 所有图片占用的字节数
+         */
+        private final long bytes;
+    }
+
+    /**
+     * 最多缓存多少种块大小的缩放结果
+     */
+    private static final int SCALED_MAX_ENTRIES = 8;
+    /**
+     * 缩放结果最多占用多少字节，超过时淘汰最久未使用的块大小
+     */
+    private static final long SCALED_MAX_BYTES = 64L * 1024 * 1024;
+
     /**
      * 用于替换的图片列表，实际替换时会从第一个开始，依次判断宽高是否合适
      */
@@ -51,6 +78,18 @@ public final class ImgBlockQRCodeStyle implements IQRCodeStyle {
      * 码眼图片列表
      */
     private final List<BufferedImage> eyeImgs;
+    /**
+     * 用于替换的图片中最大的高度(块数)
+     */
+    private final int maxHeight;
+    /**
+     * 按块大小缓存的缩放好的图片
+     */
+    private final LruCache<Integer, ScaledImgs> scaled;
+    /**
+     * 随机数种子，为 null 时每次绘制都使用当前线程的随机数生成器
+     */
+    private final Long seed;
 
     /**
      * 构造一个二维码样式的实例
@@ -58,8 +97,23 @@ public final class ImgBlockQRCodeStyle implements IQRCodeStyle {
      * @param eyeImgs 码眼图片列表
      */
     private ImgBlockQRCodeStyle(@NonNull List<Imgs> imgs, @NonNull List<BufferedImage> eyeImgs) {
+        this(imgs, eyeImgs, new LruCache<>(SCALED_MAX_ENTRIES, SCALED_MAX_BYTES, s -> s.bytes), null);
+    }
+
+    /**
+     * 构造一个二维码样式的实例
+     * @param imgs 用于替换的图片列表，实际替换时会从第一个开始，依次判断宽高是否合适
+     * @param eyeImgs 码眼图片列表
+     * @param scaled 按块大小缓存的缩放好的图片
+     * @param seed 随机数种子，可以为 null
+     */
+    private ImgBlockQRCodeStyle(@NonNull List<Imgs> imgs, @NonNull List<BufferedImage> eyeImgs,
+                                @NonNull LruCache<Integer, ScaledImgs> scaled, Long seed) {
         this.imgs = imgs;
         this.eyeImgs = eyeImgs;
+        this.maxHeight = imgs.stream().mapToInt(img -> img.height).max().orElse(1);
+        this.scaled = scaled;
+        this.seed = seed;
     }
 
     /**
@@ -85,6 +139,11 @@ public final class ImgBlockQRCodeStyle implements IQRCodeStyle {
         return builder.build();
     }
 
+    /**
+     * 绘制时记录块是否已被处理的位图，每个线程复用一份
+     */
+    private static final ThreadLocal<OccupancyBitmap> occupancy = ThreadLocal.withInitial(OccupancyBitmap::new);
+
     /**
      * 输出为图片
      * @param arr 填充数组
@@ -95,50 +154,74 @@ public final class ImgBlockQRCodeStyle implements IQRCodeStyle {
      */
     @Override
     public BufferedImage toImg(@NonNull boolean[][] arr, int borderBlock, int blockSize, int foregroundColor, int backgroundColor) {
+        return this.toImg(QRMatrix.of(arr, borderBlock), blockSize, foregroundColor, backgroundColor);
+    }
+
+    /**
+     * 输出为图片，不会修改传入的填充矩阵
+     * @param matrix 填充矩阵
+     * @param blockSize 块大小(像素)
+     * @param backgroundColor 背景色
+     * @return 图片
+     */
+    @Override
+    public BufferedImage toImg(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor) {
+        int imgWidth = matrix.getWidth() * blockSize;
+        BufferedImage image = new BufferedImage(imgWidth, imgWidth, BufferedImage.TYPE_INT_RGB);
+        this.drawTo(matrix, blockSize, foregroundColor, backgroundColor, image);
+        return image;
+    }
+
+    @Override
+    public void drawTo(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor, @NonNull BufferedImage image) {
         // 宽高
-        int blockWidth = arr.length;
+        int borderBlock = matrix.getBorder();
+        int blockWidth = matrix.getWidth();
         int imgWidth = blockWidth * blockSize;
 
-        // 结果图片
-        BufferedImage image = new BufferedImage(imgWidth, imgWidth, BufferedImage.TYPE_INT_RGB);
         // 获取画笔
         Graphics2D gs = image.createGraphics();
         gs.setBackground(new Color(backgroundColor));
         gs.clearRect(0, 0, imgWidth, imgWidth);
 
+        // 缩放好的图片
+        ScaledImgs scaled = this.scaled.computeIfAbsent(blockSize, this::scale);
+        // 随机数生成器，指定了种子时每次绘制都从种子重新开始，否则使用当前线程的随机数生成器，避免线程间竞争
+        IntUnaryOperator rand = this.seed == null ? ThreadLocalRandom.current()::nextInt : new SplittableRandom(this.seed)::nextInt;
+
         // 画三个码眼
-        gs.drawImage(this.eyeImgs.get(rand.nextInt(this.eyeImgs.size())), borderBlock * blockSize, borderBlock * blockSize, blockSize * 7, blockSize * 7, null);
-        gs.drawImage(this.eyeImgs.get(rand.nextInt(this.eyeImgs.size())), (blockWidth - borderBlock - 7) * blockSize, borderBlock * blockSize, blockSize * 7, blockSize * 7, null);
-        gs.drawImage(this.eyeImgs.get(rand.nextInt(this.eyeImgs.size())), borderBlock * blockSize, (blockWidth - borderBlock - 7) * blockSize, blockSize * 7, blockSize * 7, null);
-        // 将三个码眼的位置设置为 false
-        // 左上
-        for (int x = borderBlock + 6; x >= borderBlock; x--) {
-            for (int y = borderBlock + 6; y >= borderBlock; y--) {
-                arr[x][y] = false;
-            }
-        }
-        // 左下、右上
-        for (int a = blockWidth - borderBlock - 7; a < blockWidth; a++) { // 横轴或纵轴数字较大的那边的坐标
-            for (int b = borderBlock + 6; b >= borderBlock; b--) { // 与外循环的轴垂直的轴的坐标
-                arr[a][b] = false; // 左下
-                arr[b][a] = false; // 右上
-            }
-        }
+        gs.drawImage(scaled.eyeImgs.get(rand.applyAsInt(scaled.eyeImgs.size())), borderBlock * blockSize, borderBlock * blockSize, null);
+        gs.drawImage(scaled.eyeImgs.get(rand.applyAsInt(scaled.eyeImgs.size())), (blockWidth - borderBlock - 7) * blockSize, borderBlock * blockSize, null);
+        gs.drawImage(scaled.eyeImgs.get(rand.applyAsInt(scaled.eyeImgs.size())), borderBlock * blockSize, (blockWidth - borderBlock - 7) * blockSize, null);
+        // 待处理的块，三个码眼的位置已经画过了，标记为已处理
+        OccupancyBitmap occupancy = ImgBlockQRCodeStyle.occupancy.get().reset(matrix);
+        occupancy.clear(borderBlock, borderBlock, 7, 7); // 左上
+        occupancy.clear(blockWidth - borderBlock - 7, borderBlock, 7, 7); // 右上
+        occupancy.clear(borderBlock, blockWidth - borderBlock - 7, 7, 7); // 左下
 
         // 填充内容
+        // fits[h] 为从当前块开始向下 h 行中，每行向右连续未被处理的块数的最小值，宽 w 高 h 的图片能放下当且仅当 fits[h] >= w
+        int[] fits = new int[this.maxHeight + 1];
         for (int y = borderBlock; y < blockWidth; y++) {
-            for (int x = borderBlock; x < blockWidth; x++) {
-                if (!arr[y][x]) continue; // 不需要填充的点直接过
+            for (int x = occupancy.nextSet(borderBlock, y); x < blockWidth; x = occupancy.nextSet(x + 1, y)) {
+                // 每个块只计算一次各行的连续块数，之后判断每种图片都是 O(1)
+                int fit = Integer.MAX_VALUE;
+                for (int h = 1; h <= this.maxHeight; h++) {
+                    fit = Math.min(fit, occupancy.runLength(x, y + h - 1));
+                    fits[h] = fit;
+                }
 
-                // 依次判断能否填充
-                for (Imgs imgList : this.imgs) {
-                    if (this.canDraw(imgList.width, imgList.height, x, y, arr)) {
-                        int startX = x * blockSize;
-                        int startY = y * blockSize;
+                // 按面积从大到小，依次判断能否填充
+                for (int i = 0; i < this.imgs.size(); i++) {
+                    Imgs imgList = this.imgs.get(i);
+                    if (fits[imgList.height] >= imgList.width) {
+                        // 标记为已处理
+                        occupancy.clear(x, y, imgList.width, imgList.height);
 
                         // 绘制图片
-                        BufferedImage img = imgList.imgs.get(rand.nextInt(imgList.imgs.size()));
-                        gs.drawImage(img, startX, startY, imgList.width * blockSize, imgList.height * blockSize, null);
+                        List<BufferedImage> scaledList = scaled.imgs.get(i);
+                        BufferedImage img = scaledList.get(rand.applyAsInt(scaledList.size()));
+                        gs.drawImage(img, x * blockSize, y * blockSize, null);
 
                         // 跳出循环，不再继续尝试
                         break;
@@ -151,36 +234,87 @@ public final class ImgBlockQRCodeStyle implements IQRCodeStyle {
         // 如果上面的代码出现异常，会导致这行代码无法被调用到
         // 但 JVM 最终仍会执行这个方法同样的流程去回收资源，因此无需做特殊处理
         gs.dispose();
-
-        // 返回结果
-        return image;
     }
 
     /**
-     * 判断能否进行填充，如可以，则将填充数组的被填充部分设置为 false
-     * @param width 填充的宽度
-     * @param height 填充的高度
-     * @param x 开始位置的横坐标
-     * @param y 开始位置的纵坐标
-     * @param arr 填充数组
-     * @return 能否进行填充
+     * 将所有图片缩放到指定的块大小，并转换为预乘 Alpha 的格式，绘制时无需再次缩放
+     * @param blockSize 块大小(像素)
+     * @return 缩放好的图片
      */
-    private boolean canDraw(int width, int height, int x, int y, boolean[][] arr) {
-        if ((x + width > arr.length) || (y + height > arr.length)) {
-            return false;
-        }
-
-        for (int yy = y; yy < height + y; yy++) {
-            for (int xx = x; xx < width + x; xx++) {
-                if (!arr[yy][xx]) return false;
+    private ScaledImgs scale(int blockSize) {
+        long[] bytes = {0};
+
+        List<List<BufferedImage>> imgs = new ArrayList<>(this.imgs.size());
+        for (Imgs imgList : this.imgs) {
+            List<BufferedImage> list = new ArrayList<>(imgList.imgs.size());
+            for (BufferedImage img : imgList.imgs) {
+                list.add(scale(img, imgList.width * blockSize, imgList.height * blockSize, bytes));
             }
+            imgs.add(list);
         }
-        for (int yy = y; yy < height + y; yy++) {
-            for (int xx = x; xx < width + x; xx++) {
-                arr[yy][xx] = false;
-            }
+
+        List<BufferedImage> eyeImgs = new ArrayList<>(this.eyeImgs.size());
+        for (BufferedImage img : this.eyeImgs) {
+            eyeImgs.add(scale(img, 7 * blockSize, 7 * blockSize, bytes));
         }
-        return true;
+
+        return new ScaledImgs(imgs, eyeImgs, bytes[0]);
+    }
+
+    /**
+     * 缩放一张图片
+     * @param img 原图
+     * @param width 目标宽度(像素)
+     * @param height 目标高度(像素)
+     * @param bytes 累加缩放结果占用的字节数
+     * @return 缩放结果
+     */
+    private static BufferedImage scale(BufferedImage img, int width, int height, long[] bytes) {
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D gs = result.createGraphics();
+        gs.drawImage(img, 0, 0, width, height, null);
+        gs.dispose();
+
+        bytes[0] += 4L * width * height;
+        return result;
+    }
+
+    /**
+     * 图片和码眼是随机选择的，只有指定了随机数种子时，相同的输入才会生成相同的图片
+     * @return 是否指定了随机数种子
+     */
+    @Override
+    public boolean isDeterministic() {
+        return this.seed != null;
+    }
+
+    /**
+     * 获取使用指定随机数种子的样式，与当前样式共用图片和缩放好的图片
+     * @param seed 随机数种子
+     * @return 使用指定随机数种子的样式
+     */
+    @Override
+    public ImgBlockQRCodeStyle withSeed(long seed) {
+        return new ImgBlockQRCodeStyle(this.imgs, this.eyeImgs, this.scaled, seed);
+    }
+
+    /**
+     * 使用相同的图片和随机数种子的样式视为相等
+     * @param o 另一个对象
+     * @return 是否相等
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImgBlockQRCodeStyle)) return false;
+
+        ImgBlockQRCodeStyle other = (ImgBlockQRCodeStyle) o;
+        return this.imgs == other.imgs && Objects.equals(this.seed, other.seed);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this.imgs) * 31 + Objects.hashCode(this.seed);
     }
 
     /**
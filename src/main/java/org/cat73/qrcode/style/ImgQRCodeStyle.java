@@ -1,6 +1,7 @@
 package org.cat73.qrcode.style;
 
 import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
 import org.cat73.qrcode.util.Lang;
 
 import javax.imageio.ImageIO;
@@ -175,17 +176,32 @@ public final class ImgQRCodeStyle implements IQRCodeStyle {
 
     @Override
     public BufferedImage toImg(@NonNull boolean[][] arr, int borderBlock, int blockSize, int foregroundColor, int backgroundColor) {
+        return this.toImg(QRMatrix.of(arr, borderBlock), blockSize, foregroundColor, backgroundColor);
+    }
+
+    @Override
+    public BufferedImage toImg(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor) {
+        int imgWidth = matrix.getWidth() * blockSize;
+        BufferedImage image = new BufferedImage(imgWidth, imgWidth, BufferedImage.TYPE_INT_RGB);
+        this.drawTo(matrix, blockSize, foregroundColor, backgroundColor, image);
+        return image;
+    }
+
+    @Override
+    public void drawTo(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor, @NonNull BufferedImage image) {
         // 宽高
-        int blockWidth = arr.length;
+        int borderBlock = matrix.getBorder();
+        int blockWidth = matrix.getWidth();
         int imgWidth = blockWidth * blockSize;
 
-        // 结果图片
-        BufferedImage image = new BufferedImage(imgWidth, imgWidth, BufferedImage.TYPE_INT_RGB);
         // 获取画笔
         Graphics2D gs = image.createGraphics();
 
         // 画背景图
         if (this.imgBorder) {
+            // 目标图片可能是复用的，先清空为新图片的初始颜色(黑色)，保证透明的背景图绘制结果不变
+            gs.setBackground(Color.BLACK);
+            gs.clearRect(0, 0, imgWidth, imgWidth);
             gs.drawImage(this.img, 0, 0, imgWidth, imgWidth, null);
         } else {
             gs.setBackground(new Color(backgroundColor));
@@ -208,7 +224,7 @@ public final class ImgQRCodeStyle implements IQRCodeStyle {
         int end = blockWidth - borderBlock;
         for (int y = borderBlock; y < end; y++) {
             for (int x = borderBlock; x < end; x++) {
-                boolean foreground = arr[y][x];
+                boolean foreground = matrix.get(x, y);
                 int color = foreground ? foregroundColor : backgroundColor;
                 this.drawRect(image, x * blockSize + pointStart, y * blockSize + pointStart, pointSize, pointSize, color, this.adaptiveColorRate);
             }
@@ -218,21 +234,16 @@ public final class ImgQRCodeStyle implements IQRCodeStyle {
         // 左上
         for (int x = borderBlock + 6; x >= borderBlock; x--) {
             for (int y = borderBlock + 6; y >= borderBlock; y--) {
-                this.drawRect(image, x * blockSize, y * blockSize, blockSize, blockSize, arr[x][y] ? foregroundColor : backgroundColor, this.eyeAdaptiveColorRate);
-                arr[x][y] = false;
+                this.drawRect(image, x * blockSize, y * blockSize, blockSize, blockSize, matrix.get(x, y) ? foregroundColor : backgroundColor, this.eyeAdaptiveColorRate);
             }
         }
         // 左下、右上
         for (int a = blockWidth - borderBlock - 7; a < end; a++) { // 横轴或纵轴数字较大的那边的坐标
             for (int b = borderBlock + 6; b >= borderBlock; b--) { // 与外循环的轴垂直的轴的坐标
-                this.drawRect(image, a * blockSize, b * blockSize, blockSize, blockSize, arr[a][b] ? foregroundColor : backgroundColor, this.eyeAdaptiveColorRate);
-                this.drawRect(image, b * blockSize, a * blockSize, blockSize, blockSize, arr[b][a] ? foregroundColor : backgroundColor, this.eyeAdaptiveColorRate);
-                arr[a][b] = false; // 左下
-                arr[b][a] = false; // 右上
+                this.drawRect(image, a * blockSize, b * blockSize, blockSize, blockSize, matrix.get(a, b) ? foregroundColor : backgroundColor, this.eyeAdaptiveColorRate); // 右上
+                this.drawRect(image, b * blockSize, a * blockSize, blockSize, blockSize, matrix.get(b, a) ? foregroundColor : backgroundColor, this.eyeAdaptiveColorRate); // 左下
             }
         }
-
-        return image;
     }
 
     /**
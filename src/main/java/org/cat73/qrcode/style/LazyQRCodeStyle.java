@@ -0,0 +1,96 @@
+package org.cat73.qrcode.style;
+
+import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
+
+import java.awt.image.BufferedImage;
+import java.util.function.Supplier;
+
+/**
+ * 延迟初始化的二维码样式<br>
+ * 在第一次使用时才会构建实际的样式，之后的调用都会转发给它
+ * @param <T> 实际样式的类型
+ */
+public final class LazyQRCodeStyle<T extends IQRCodeStyle> implements IQRCodeStyle {
+    /**
+     * 构建实际样式的方法，构建完成后会被清空
+     */
+    private Supplier<T> supplier;
+    /**
+     * 实际的样式，构建前为 null
+     */
+    private volatile T style;
+
+    /**
+     * 构造一个延迟初始化的二维码样式的实例
+     * @param supplier 构建实际样式的方法，只会被调用一次
+     */
+    private LazyQRCodeStyle(@NonNull Supplier<T> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * 构造一个延迟初始化的二维码样式
+     * @param supplier 构建实际样式的方法，只会被调用一次，不能返回 null
+     * @param <T> 实际样式的类型
+     * @return 延迟初始化的二维码样式
+     */
+    public static <T extends IQRCodeStyle> LazyQRCodeStyle<T> of(@NonNull Supplier<T> supplier) {
+        return new LazyQRCodeStyle<>(supplier);
+    }
+
+    /**
+     * 获取实际的样式，如尚未构建，则构建它
+     * @return 实际的样式
+     */
+    public T get() {
+        T style = this.style;
+        if (style == null) {
+            synchronized (this) {
+                style = this.style;
+                if (style == null) {
+                    style = this.supplier.get();
+                    if (style == null) {
+                        throw new NullPointerException("supplier returned null");
+                    }
+                    this.style = style;
+                    this.supplier = null;
+                }
+            }
+        }
+        return style;
+    }
+
+    /**
+     * 实际的样式是否已被构建
+     * @return 实际的样式是否已被构建
+     */
+    public boolean isInitialized() {
+        return this.style != null;
+    }
+
+    @Override
+    public BufferedImage toImg(@NonNull boolean[][] arr, int borderBlock, int blockSize, int foregroundColor, int backgroundColor) {
+        return this.get().toImg(arr, borderBlock, blockSize, foregroundColor, backgroundColor);
+    }
+
+    @Override
+    public BufferedImage toImg(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor) {
+        return this.get().toImg(matrix, blockSize, foregroundColor, backgroundColor);
+    }
+
+    @Override
+    public void drawTo(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor, @NonNull BufferedImage target) {
+        this.get().drawTo(matrix, blockSize, foregroundColor, backgroundColor, target);
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return this.get().isDeterministic();
+    }
+
+    @Override
+    public IQRCodeStyle withSeed(long seed) {
+        return this.get().withSeed(seed);
+    }
+}
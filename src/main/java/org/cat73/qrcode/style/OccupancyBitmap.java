@@ -0,0 +1,144 @@
+package org.cat73.qrcode.style;
+
+import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
+
+/**
+ * 可复用的块占用位图，供样式在绘制时记录哪些块还未被处理<br>
+ * 每个块只占 1 bit，坐标包含边框，非线程安全，通常配合 ThreadLocal 使用
+ */
+final class OccupancyBitmap {
+    /**
+     * 宽高(块数)
+     */
+    private int width;
+    /**
+     * 每行占用的 long 数量
+     */
+    private int wordsPerRow;
+    /**
+     * 按行保存的数据，容量不足时才重新分配
+     */
+    private long[] bits = new long[0];
+
+    /**
+     * 用填充矩阵重置位图，前景色的块被标记为未处理
+     * @param matrix 填充矩阵
+     * @return 自身实例，方便链式调用
+     */
+    OccupancyBitmap reset(@NonNull QRMatrix matrix) {
+        this.width = matrix.getWidth();
+        this.wordsPerRow = matrix.getRowWords();
+
+        int length = this.width * this.wordsPerRow;
+        if (this.bits.length < length) {
+            this.bits = new long[length];
+        }
+        for (int y = 0; y < this.width; y++) {
+            int base = y * this.wordsPerRow;
+            for (int i = 0; i < this.wordsPerRow; i++) {
+                this.bits[base + i] = matrix.getRowWord(y, i);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 获取宽高(块数)
+     * @return 宽高
+     */
+    int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * 判断指定的块是否未被处理
+     * @param x 横坐标
+     * @param y 纵坐标
+     * @return 是否未被处理
+     */
+    boolean get(int x, int y) {
+        return (this.bits[y * this.wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * 从指定位置开始，查找同一行中下一个未被处理的块
+     * @param x 开始的横坐标
+     * @param y 纵坐标
+     * @return 找到的横坐标，如找不到则返回 {@link #getWidth()}
+     */
+    int nextSet(int x, int y) {
+        if (x >= this.width) {
+            return this.width;
+        }
+
+        int base = y * this.wordsPerRow;
+        int index = x >>> 6;
+        long word = this.bits[base + index] & (-1L << x);
+        while (word == 0) {
+            if (++index >= this.wordsPerRow) {
+                return this.width;
+            }
+            word = this.bits[base + index];
+        }
+        return (index << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * 获取从指定位置开始，同一行中连续未被处理的块数
+     * @param x 开始的横坐标
+     * @param y 纵坐标
+     * @return 连续未被处理的块数，指定位置已被处理或超出范围时返回 0
+     */
+    int runLength(int x, int y) {
+        if (x >= this.width || y >= this.width) {
+            return 0;
+        }
+
+        // 取反后查找下一个为 1 的位，即下一个已被处理的块，行末尾之后的位总是 0
+        int base = y * this.wordsPerRow;
+        int index = x >>> 6;
+        long word = ~this.bits[base + index] & (-1L << x);
+        while (word == 0) {
+            if (++index >= this.wordsPerRow) {
+                return this.width - x;
+            }
+            word = ~this.bits[base + index];
+        }
+        return Math.min((index << 6) + Long.numberOfTrailingZeros(word), this.width) - x;
+    }
+
+    /**
+     * 将指定区域内的块标记为已处理
+     * @param x 区域开始的横坐标
+     * @param y 区域开始的纵坐标
+     * @param width 区域的宽度
+     * @param height 区域的高度
+     */
+    void clear(int x, int y, int width, int height) {
+        int endX = Math.min(x + width, this.width);
+        int endY = Math.min(y + height, this.width);
+        x = Math.max(x, 0);
+        y = Math.max(y, 0);
+
+        for (int yy = y; yy < endY; yy++) {
+            int base = yy * this.wordsPerRow;
+            for (int start = x; start < endX; ) {
+                int index = start >>> 6;
+                int count = Math.min(endX - start, 64 - (start & 63));
+                this.bits[base + index] &= ~OccupancyBitmap.mask(start, count);
+                start += count;
+            }
+        }
+    }
+
+    /**
+     * 生成同一个 long 内从指定位置开始的连续 count 位的掩码
+     * @param start 开始的位置，只使用低 6 位
+     * @param count 位数(1 ~ 64)，start % 64 + count 不能超过 64
+     * @return 掩码
+     */
+    private static long mask(int start, int count) {
+        return (-1L >>> (64 - count)) << start;
+    }
+}
@@ -0,0 +1,35 @@
+package org.cat73.qrcode.util;
+
+import lombok.NonNull;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 将数据写入 ByteBuffer 的输出流<br>
+ * 剩余空间不足时会抛出 {@link java.nio.BufferOverflowException}
+ */
+public class ByteBufferOutputStream extends OutputStream {
+    /**
+     * 写入的目标
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * 构造一个写入到指定 ByteBuffer 的输出流
+     * @param buffer 写入的目标，数据从它当前的 position 开始写入
+     */
+    public ByteBufferOutputStream(@NonNull ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+        this.buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) {
+        this.buffer.put(b, off, len);
+    }
+}
@@ -0,0 +1,33 @@
+package org.cat73.qrcode.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+/**
+ * 可以不复制数据，直接转换为输入流的 ByteArrayOutputStream
+ */
+public class FastByteArrayOutputStream extends ByteArrayOutputStream {
+    /**
+     * 使用默认的初始容量构造实例
+     */
+    public FastByteArrayOutputStream() {
+        super();
+    }
+
+    /**
+     * 使用指定的初始容量构造实例
+     * @param size 初始容量
+     */
+    public FastByteArrayOutputStream(int size) {
+        super(size);
+    }
+
+    /**
+     * 转换为输入流，与自身共享数据，转换后不应再写入数据
+     * @return 输入流
+     */
+    public synchronized InputStream toInputStream() {
+        return new ByteArrayInputStream(this.buf, 0, this.count);
+    }
+}
@@ -0,0 +1,284 @@
+package org.cat73.qrcode.util;
+
+import lombok.NonNull;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片输出相关的工具类
+ */
+public class Images {
+    protected Images() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 输出为 BMP 图片
+     * @param img 图片
+     * @return BMP 图片数据的输出流
+     */
+    public static InputStream toBmp(@NonNull BufferedImage img) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        Lang.wrapCode(() -> Images.writeBmp(img, out));
+        return out.toInputStream();
+    }
+
+    /**
+     * 输出为 JPG 图片
+     * @param img 图片
+     * @param quality 压缩质量，范围在 0.0 &lt; quality &lt; 1.0 之间，超出范围则不使用压缩
+     * @return JPG 图片数据的输出流
+     */
+    public static InputStream toJpg(@NonNull BufferedImage img, float quality) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        Lang.wrapCode(() -> Images.writeJpg(img, out, quality));
+        return out.toInputStream();
+    }
+
+    /**
+     * 可以复用的 ImageWriter 及其参数，同一时间只能被一个线程使用
+     */
+    private static final class CachedWriter {
+        /**
+         * ImageWriter，可以反复使用，只需每次重新设置输出
+         */
+        private final ImageWriter writer;
+        /**
+         * 按压缩质量缓存的参数
+         */
+        private final Map<Float, ImageWriteParam> params = new HashMap<>();
+
+        /**
+         * 构造一个复用的 ImageWriter
+         * @param format 图片格式
+         */
+        private CachedWriter(String format) {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+            if (!writers.hasNext()) throw Lang.makeThrow("no ImageWriter for %s", format);
+            this.writer = writers.next();
+        }
+
+        /**
+         * 获取指定压缩质量的参数
+         * @param quality 压缩质量，范围在 0.0 &lt; quality &lt; 1.0 之间，超出范围则不使用压缩
+         * @return 参数
+         */
+        private ImageWriteParam param(float quality) {
+            // 超出范围的质量都对应默认参数
+            Float key = quality > 0.0f && quality < 1.0f ? quality : -1.0f;
+            ImageWriteParam param = this.params.get(key);
+            if (param == null) {
+                param = this.writer.getDefaultWriteParam();
+                if (key > 0.0f) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(key);
+                }
+                // 质量一般只有少数几种，超出上限时不再缓存，避免无限增长
+                if (this.params.size() < MAX_CACHED_PARAMS) {
+                    this.params.put(key, param);
+                }
+            }
+            return param;
+        }
+    }
+
+    /**
+     * 可以复用的 ImageWriter 的池，最多保留 CPU 核数个空闲的 ImageWriter<br>
+     * 不使用 ThreadLocal，线程池中的线程不会持有 ImageWriter，也就不会因此在重新部署时泄漏 ClassLoader
+     */
+    private static final class WriterPool {
+        /**
+         * 图片格式
+         */
+        private final String format;
+        /**
+         * 空闲的 ImageWriter
+         */
+        private final ConcurrentLinkedDeque<CachedWriter> idle = new ConcurrentLinkedDeque<>();
+        /**
+         * 空闲的 ImageWriter 数，与 idle 的大小近似一致，只用于限制池的大小
+         */
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        /**
+         * 构造一个 ImageWriter 的池
+         * @param format 图片格式
+         */
+        private WriterPool(String format) {
+            this.format = format;
+        }
+
+        /**
+         * 借出一个 ImageWriter，没有空闲的 ImageWriter 时创建一个新的
+         * @return 借出的 ImageWriter
+         */
+        private CachedWriter borrow() {
+            CachedWriter cached = this.idle.pollLast();
+            if (cached == null) {
+                return new CachedWriter(this.format);
+            }
+            this.idleCount.decrementAndGet();
+            return cached;
+        }
+
+        /**
+         * 归还一个 ImageWriter，池已满时直接释放它
+         * @param cached 归还的 ImageWriter
+         */
+        private void giveBack(CachedWriter cached) {
+            if (this.idleCount.incrementAndGet() <= MAX_IDLE_WRITERS) {
+                this.idle.addLast(cached);
+            } else {
+                this.idleCount.decrementAndGet();
+                cached.writer.dispose();
+            }
+        }
+
+        /**
+         * 释放所有空闲的 ImageWriter
+         */
+        private void clear() {
+            CachedWriter cached;
+            while ((cached = this.idle.pollFirst()) != null) {
+                this.idleCount.decrementAndGet();
+                cached.writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * 每个 ImageWriter 最多缓存多少种压缩质量的参数
+     */
+    private static final int MAX_CACHED_PARAMS = 16;
+    /**
+     * 每种格式最多保留多少个空闲的 ImageWriter
+     */
+    private static final int MAX_IDLE_WRITERS = Runtime.getRuntime().availableProcessors();
+    /**
+     * 复用的 JPG ImageWriter，避免每次都通过 ServiceRegistry 查找
+     */
+    private static final WriterPool jpgWriters = new WriterPool("JPEG");
+    /**
+     * 复用的 BMP ImageWriter
+     */
+    private static final WriterPool bmpWriters = new WriterPool("BMP");
+
+    /**
+     * 释放所有空闲的 JPG、BMP ImageWriter<br>
+     * 复用的 ImageWriter 会一直保留在池中(每种格式最多 CPU 核数个)，直到调用这个方法，
+     * 在容器中重新部署或卸载应用前，可以调用它来立即释放 ImageWriter 占用的本地资源，之后的写出会重新创建 ImageWriter
+     */
+    public static void releaseWriters() {
+        Images.jpgWriters.clear();
+        Images.bmpWriters.clear();
+    }
+
+    /**
+     * 写出 BMP 图片到输出流中，不会关闭输出流
+     * @param img 图片
+     * @param out 输出流
+     * @throws IOException 写出失败
+     */
+    public static void writeBmp(@NonNull BufferedImage img, @NonNull OutputStream out) throws IOException {
+        Images.write(Images.bmpWriters, img, out, 0.0f);
+    }
+
+    /**
+     * 写出 JPG 图片到输出流中，不会关闭输出流
+     * @param img 图片
+     * @param out 输出流
+     * @param quality 压缩质量，范围在 0.0 &lt; quality &lt; 1.0 之间，超出范围则不使用压缩
+     * @throws IOException 写出失败
+     */
+    public static void writeJpg(@NonNull BufferedImage img, @NonNull OutputStream out, float quality) throws IOException {
+        Images.write(Images.jpgWriters, img, out, quality);
+    }
+
+    /**
+     * 从池中借出 ImageWriter 写出图片，写出后归还<br>
+     * 直接使用 MemoryCacheImageOutputStream，不论 {@link ImageIO#getUseCache()} 如何设置，都不会创建临时文件
+     * @param pool 复用的 ImageWriter 的池
+     * @param img 图片
+     * @param out 输出流
+     * @param quality 压缩质量
+     * @throws IOException 写出失败
+     */
+    private static void write(WriterPool pool, BufferedImage img, OutputStream out, float quality) throws IOException {
+        CachedWriter cached = pool.borrow();
+        ImageWriter writer = cached.writer;
+
+        boolean success = false;
+        // 关闭 ImageOutputStream 时会写出剩余的数据，但不会关闭 out
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), cached.param(quality));
+            success = true;
+        } finally {
+            if (success) {
+                writer.setOutput(null);
+                pool.giveBack(cached);
+            } else {
+                // 出错后 ImageWriter 的状态不确定，不再归还，直接释放
+                writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * 获取 TYPE_INT_RGB 或 TYPE_INT_ARGB 图片的像素数组，可以直接读写以避免逐像素经过 ColorModel 转换<br>
+     * 子图片(如 {@link BufferedImage#getSubimage(int, int, int, int)} 的结果)与父图片共用同一个数组，
+     * 需要通过 {@link #pixelOffset(BufferedImage)} 和 {@link #scanlineStride(BufferedImage)} 定位像素
+     * @param img 图片
+     * @return 像素数组，其他类型的图片返回 null
+     */
+    public static int[] intPixels(@NonNull BufferedImage img) {
+        int type = img.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+            return null;
+        }
+        WritableRaster raster = img.getRaster();
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel) || !(raster.getDataBuffer() instanceof DataBufferInt)) {
+            return null;
+        }
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+
+    /**
+     * 获取图片左上角的像素在 {@link #intPixels(BufferedImage)} 返回的数组中的下标
+     * @param img 图片，必须是 intPixels 返回非 null 的图片
+     * @return 左上角的像素的下标
+     */
+    public static int pixelOffset(@NonNull BufferedImage img) {
+        WritableRaster raster = img.getRaster();
+        // 子图片的 Raster 相对于父图片平移，平移量为负数
+        return raster.getDataBuffer().getOffset()
+                - raster.getSampleModelTranslateY() * Images.scanlineStride(img)
+                - raster.getSampleModelTranslateX();
+    }
+
+    /**
+     * 获取 {@link #intPixels(BufferedImage)} 返回的数组中每行像素的间隔
+     * @param img 图片，必须是 intPixels 返回非 null 的图片
+     * @return 每行像素的间隔，子图片时大于图片的宽度
+     */
+    public static int scanlineStride(@NonNull BufferedImage img) {
+        return ((SinglePixelPackedSampleModel) img.getRaster().getSampleModel()).getScanlineStride();
+    }
+}
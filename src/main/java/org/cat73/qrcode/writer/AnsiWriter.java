@@ -0,0 +1,181 @@
+package org.cat73.qrcode.writer;
+
+import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
+
+import java.io.IOException;
+
+/**
+ * 直接从填充矩阵生成带 ANSI 颜色转义序列的文本，用于在终端中显示<br>
+ * 每个字符对应上下两个块(上半部分用前景色 ▀ 绘制，下半部分用背景色)，显示出来接近正方形<br>
+ * 只在颜色发生变化时才输出转义序列，连续的相同颜色不会重复输出，适合在较慢的 SSH 连接上使用
+ */
+public final class AnsiWriter {
+    private AnsiWriter() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 颜色模式
+     */
+    public enum ColorMode {
+        /**
+         * 24 位真彩色(ESC[38;2;r;g;bm)
+         */
+        TRUECOLOR,
+        /**
+         * 256 色(ESC[38;5;nm)，颜色会被转换为最接近的调色板颜色
+         */
+        ANSI_256
+    }
+
+    /**
+     * 上半块字符
+     */
+    private static final char UPPER_HALF = '▀';
+
+    /**
+     * 写出带 ANSI 颜色的文本，每行文本写完后才会写出到 out
+     * @param matrix 填充矩阵
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param mode 颜色模式
+     * @param out 输出的目标，如 PrintStream、Writer
+     * @throws IOException 写出失败
+     */
+    public static void write(@NonNull QRMatrix matrix, int foregroundColor, int backgroundColor,
+                             @NonNull ColorMode mode, @NonNull Appendable out) throws IOException {
+        int width = matrix.getWidth();
+        int fg = foregroundColor & 0x00FFFFFF;
+        int bg = backgroundColor & 0x00FFFFFF;
+
+        StringBuilder line = new StringBuilder(width * 4);
+        for (int y = 0; y < width; y += 2) {
+            // 终端当前的前景色和背景色，每行开始时未设置
+            int currentFg = -1;
+            int currentBg = -1;
+
+            for (int x = 0; x < width; x++) {
+                // 块数为奇数时，最后一行文本的下半部分使用背景色
+                int top = matrix.get(x, y) ? fg : bg;
+                int bottom = y + 1 < width && matrix.get(x, y + 1) ? fg : bg;
+
+                if (top == bottom) {
+                    // 上下颜色相同时只需要背景色，输出空格，不关心当前的前景色
+                    if (currentBg != bottom) {
+                        AnsiWriter.sgr(line, -1, bottom, mode);
+                        currentBg = bottom;
+                    }
+                    line.append(' ');
+                } else {
+                    int newFg = currentFg == top ? -1 : top;
+                    int newBg = currentBg == bottom ? -1 : bottom;
+                    if (newFg != -1 || newBg != -1) {
+                        AnsiWriter.sgr(line, newFg, newBg, mode);
+                        currentFg = top;
+                        currentBg = bottom;
+                    }
+                    line.append(UPPER_HALF);
+                }
+            }
+
+            // 行尾重置颜色，避免背景色延伸到行尾之后
+            line.append("\u001B[0m\n");
+            out.append(line);
+            line.setLength(0);
+        }
+    }
+
+    /**
+     * 追加一个设置颜色的转义序列，前景色和背景色合并在同一个序列中
+     * @param sb 输出的目标
+     * @param fg 前景色(RGB)，为 -1 时不设置
+     * @param bg 背景色(RGB)，为 -1 时不设置
+     * @param mode 颜色模式
+     */
+    private static void sgr(StringBuilder sb, int fg, int bg, ColorMode mode) {
+        sb.append("\u001B[");
+        if (fg != -1) {
+            AnsiWriter.color(sb, 38, fg, mode);
+            if (bg != -1) sb.append(';');
+        }
+        if (bg != -1) {
+            AnsiWriter.color(sb, 48, bg, mode);
+        }
+        sb.append('m');
+    }
+
+    /**
+     * 追加颜色参数
+     * @param sb 输出的目标
+     * @param target 38 为前景色，48 为背景色
+     * @param color 颜色(RGB)
+     * @param mode 颜色模式
+     */
+    private static void color(StringBuilder sb, int target, int color, ColorMode mode) {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        sb.append(target);
+        if (mode == ColorMode.TRUECOLOR) {
+            sb.append(";2;").append(r).append(';').append(g).append(';').append(b);
+        } else {
+            sb.append(";5;").append(AnsiWriter.to256(r, g, b));
+        }
+    }
+
+    /**
+     * 将颜色转换为 256 色调色板中最接近的颜色，在 6x6x6 色块和 24 级灰阶中选择
+     * @param r 红色的量(0 ~ 255)
+     * @param g 绿色的量(0 ~ 255)
+     * @param b 蓝色的量(0 ~ 255)
+     * @return 调色板中的下标
+     */
+    private static int to256(int r, int g, int b) {
+        // 6x6x6 色块，每个分量的值为 0, 95, 135, 175, 215, 255
+        int ri = AnsiWriter.cubeIndex(r);
+        int gi = AnsiWriter.cubeIndex(g);
+        int bi = AnsiWriter.cubeIndex(b);
+        int cubeDistance = AnsiWriter.distance(r, g, b, AnsiWriter.cubeValue(ri), AnsiWriter.cubeValue(gi), AnsiWriter.cubeValue(bi));
+
+        // 灰阶，值为 8 + 10 * i
+        int average = (r + g + b) / 3;
+        int grayIndex = Math.min(Math.max((average - 3) / 10, 0), 23);
+        int gray = 8 + 10 * grayIndex;
+        int grayDistance = AnsiWriter.distance(r, g, b, gray, gray, gray);
+
+        return grayDistance < cubeDistance ? 232 + grayIndex : 16 + 36 * ri + 6 * gi + bi;
+    }
+
+    /**
+     * 获取颜色分量在 6 级色块中最接近的下标
+     * @param value 颜色分量(0 ~ 255)
+     * @return 下标(0 ~ 5)
+     */
+    private static int cubeIndex(int value) {
+        return value < 48 ? 0 : value < 115 ? 1 : (value - 35) / 40;
+    }
+
+    /**
+     * 获取 6 级色块中下标对应的颜色分量
+     * @param index 下标(0 ~ 5)
+     * @return 颜色分量(0 ~ 255)
+     */
+    private static int cubeValue(int index) {
+        return index == 0 ? 0 : 55 + index * 40;
+    }
+
+    /**
+     * 计算两个颜色之间距离的平方
+     * @param r1 颜色 1 的红色的量
+     * @param g1 颜色 1 的绿色的量
+     * @param b1 颜色 1 的蓝色的量
+     * @param r2 颜色 2 的红色的量
+     * @param g2 颜色 2 的绿色的量
+     * @param b2 颜色 2 的蓝色的量
+     * @return 距离的平方
+     */
+    private static int distance(int r1, int g1, int b1, int r2, int g2, int b2) {
+        return (r1 - r2) * (r1 - r2) + (g1 - g2) * (g1 - g2) + (b1 - b2) * (b1 - b2);
+    }
+}
@@ -0,0 +1,502 @@
+package org.cat73.qrcode.writer;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.cat73.qrcode.matrix.QRMatrix;
+import org.cat73.qrcode.util.FastByteArrayOutputStream;
+import org.cat73.qrcode.util.Lang;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 将多个二维码按网格排列到多页 PDF 中，用于打印标签<br>
+ * 块直接以矢量矩形绘制，每写满一页就立即写出到输出流，占用的内存只与一页的内容有关，与总页数无关<br>
+ * 不是线程安全的
+ */
+public final class PdfSheetWriter implements Closeable {
+    /**
+     * A4 纸的宽度(点，1/72 英寸)
+     */
+    public static final float A4_WIDTH = 595.28f;
+    /**
+     * A4 纸的高度(点，1/72 英寸)
+     */
+    public static final float A4_HEIGHT = 841.89f;
+
+    // **** 对象编号，页面 i 的内容为 3 + 2i，页面本身为 4 + 2i ****
+    /**
+     * 文档目录的对象编号
+     */
+    private static final int CATALOG_ID = 1;
+    /**
+     * 页面树的对象编号
+     */
+    private static final int PAGES_ID = 2;
+
+    /**
+     * 输出流，会记录已经写出的字节数
+     */
+    private final CountingOutputStream out;
+    /**
+     * 页面宽度(点)
+     */
+    private final float pageWidth;
+    /**
+     * 页面高度(点)
+     */
+    private final float pageHeight;
+    /**
+     * 每页的列数
+     */
+    private final int columns;
+    /**
+     * 每页的行数
+     */
+    private final int rows;
+    /**
+     * 页边距(点)
+     */
+    private final float margin;
+    /**
+     * 标签之间的间距(点)
+     */
+    private final float gap;
+    /**
+     * 前景色的 PDF 颜色操作符
+     */
+    private final String foregroundColor;
+    /**
+     * 背景色的 PDF 颜色操作符，为 null 时不绘制背景
+     */
+    private final String backgroundColor;
+
+    /**
+     * 当前页的内容，写满一页后压缩并写出
+     */
+    private final FastByteArrayOutputStream page = new FastByteArrayOutputStream();
+    /**
+     * 压缩页面内容用的压缩器，每页复用
+     */
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    /**
+     * 压缩页面内容用的缓冲区，每页复用
+     */
+    private final FastByteArrayOutputStream compressed = new FastByteArrayOutputStream();
+    /**
+     * 每个对象在输出流中的位置，下标为对象编号
+     */
+    private long[] offsets = new long[64];
+    /**
+     * 当前页已经放了多少个标签
+     */
+    private int labelsInPage = 0;
+    /**
+     * 已经写出的页数
+     */
+    private int pageCount = 0;
+    /**
+     * 是否已经写出了结尾
+     */
+    private boolean finished = false;
+
+    /**
+     * 构造一个 PDF 标签页的写出器，并写出文件头
+     * @param builder 参数
+     * @param out 输出流
+     * @throws IOException 写出失败
+     */
+    private PdfSheetWriter(PdfSheetWriterBuilder builder, OutputStream out) throws IOException {
+        this.out = new CountingOutputStream(out);
+        this.pageWidth = builder.pageWidth;
+        this.pageHeight = builder.pageHeight;
+        this.columns = builder.columns;
+        this.rows = builder.rows;
+        this.margin = builder.margin;
+        this.gap = builder.gap;
+        this.foregroundColor = PdfSheetWriter.color(builder.foregroundColor);
+        this.backgroundColor = builder.backgroundColor == null ? null : PdfSheetWriter.color(builder.backgroundColor);
+
+        // 文件头，第二行的二进制注释用于让传输工具将文件识别为二进制
+        this.out.write("%PDF-1.4\n%âãÏÓ\n".getBytes(StandardCharsets.ISO_8859_1));
+        this.beginObject(CATALOG_ID);
+        this.write("<< /Type /Catalog /Pages " + PAGES_ID + " 0 R >>\nendobj\n");
+    }
+
+    /**
+     * 获取一个 PDF 标签页写出器的 Builder
+     * @return PDF 标签页写出器的 Builder 的实例
+     */
+    public static PdfSheetWriterBuilder builder() {
+        return new PdfSheetWriterBuilder();
+    }
+
+    /**
+     * 添加一个二维码，当前页放满时会自动写出并开始新的一页
+     * @param matrix 填充矩阵，边框会作为留白参与排版
+     * @throws IOException 写出失败
+     */
+    public void add(@NonNull QRMatrix matrix) throws IOException {
+        if (this.finished) throw Lang.makeThrow("PdfSheetWriter is finished");
+
+        // 标签所在的格子，从左上角开始，先行后列
+        int column = this.labelsInPage % this.columns;
+        int row = this.labelsInPage / this.columns;
+        float cellWidth = (this.pageWidth - 2 * this.margin - (this.columns - 1) * this.gap) / this.columns;
+        float cellHeight = (this.pageHeight - 2 * this.margin - (this.rows - 1) * this.gap) / this.rows;
+        float size = Math.min(cellWidth, cellHeight);
+        float left = this.margin + column * (cellWidth + this.gap) + (cellWidth - size) / 2;
+        float top = this.pageHeight - this.margin - row * (cellHeight + this.gap) - (cellHeight - size) / 2;
+
+        // 坐标系变换为以块为单位、原点在标签左上角、y 轴向下，之后直接使用矩阵中的坐标
+        StringBuilder sb = new StringBuilder(256);
+        float scale = size / matrix.getWidth();
+        sb.append("q ").append(PdfSheetWriter.number(scale)).append(" 0 0 ").append(PdfSheetWriter.number(-scale)).append(' ')
+                .append(PdfSheetWriter.number(left)).append(' ').append(PdfSheetWriter.number(top)).append(" cm\n");
+        if (this.backgroundColor != null) {
+            sb.append(this.backgroundColor).append(" 0 0 ").append(matrix.getWidth()).append(' ').append(matrix.getWidth()).append(" re f\n");
+        }
+        sb.append(this.foregroundColor).append('\n');
+        this.writePage(sb);
+
+        // 每段连续的前景色块输出为一个矩形，整个标签只填充一次
+        matrix.forEachRun((y, start, end) -> {
+            sb.append(start).append(' ').append(y).append(' ').append(end - start).append(" 1 re\n");
+            if (sb.length() > 4096) {
+                this.writePage(sb);
+            }
+        });
+        sb.append("f Q\n");
+        this.writePage(sb);
+
+        // 当前页放满了，写出
+        if (++this.labelsInPage == this.columns * this.rows) {
+            this.flushPage();
+        }
+    }
+
+    /**
+     * 写出尚未写满的页和文件结尾，但不关闭输出流
+     * @throws IOException 写出失败
+     */
+    public void finish() throws IOException {
+        if (this.finished) return;
+
+        // 写出最后一页，一个标签都没有时也写出一个空白页，保证文档至少有一页
+        if (this.labelsInPage > 0 || this.pageCount == 0) {
+            this.flushPage();
+        }
+
+        // 页面树
+        this.beginObject(PAGES_ID);
+        this.write("<< /Type /Pages /MediaBox [0 0 " + PdfSheetWriter.number(this.pageWidth) + " " + PdfSheetWriter.number(this.pageHeight)
+                + "] /Count " + this.pageCount + " /Kids [");
+        StringBuilder kids = new StringBuilder(4096);
+        for (int i = 0; i < this.pageCount; i++) {
+            kids.append(PdfSheetWriter.pageId(i)).append(" 0 R ");
+            if (kids.length() > 4000) {
+                this.write(kids.toString());
+                kids.setLength(0);
+            }
+        }
+        kids.append("] >>\nendobj\n");
+        this.write(kids.toString());
+
+        // 交叉引用表，每行固定 20 字节
+        int objectCount = PdfSheetWriter.pageId(this.pageCount - 1) + 1;
+        long xref = this.out.count;
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("xref\n0 ").append(objectCount).append("\n0000000000 65535 f \n");
+        for (int id = 1; id < objectCount; id++) {
+            sb.append(String.format("%010d 00000 n \n", this.offsets[id]));
+            if (sb.length() > 4000) {
+                this.write(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        sb.append("trailer\n<< /Size ").append(objectCount).append(" /Root ").append(CATALOG_ID).append(" 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        this.write(sb.toString());
+        this.out.flush();
+
+        this.deflater.end();
+        this.finished = true;
+    }
+
+    /**
+     * 写出尚未写满的页和文件结尾，并关闭输出流
+     * @throws IOException 写出失败
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.finish();
+        } finally {
+            this.out.close();
+        }
+    }
+
+    /**
+     * 获取已经写出的页数
+     * @return 已经写出的页数
+     */
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    /**
+     * 将内容追加到当前页中，并清空 StringBuilder
+     * @param sb 内容
+     */
+    private void writePage(StringBuilder sb) {
+        for (int i = 0; i < sb.length(); i++) {
+            this.page.write(sb.charAt(i));
+        }
+        sb.setLength(0);
+    }
+
+    /**
+     * 压缩并写出当前页
+     * @throws IOException 写出失败
+     */
+    private void flushPage() throws IOException {
+        // 压缩页面内容
+        this.compressed.reset();
+        this.deflater.reset();
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(this.compressed, this.deflater, 8192)) {
+            this.page.writeTo(dos);
+        }
+
+        // 内容流
+        int pageIndex = this.pageCount;
+        this.beginObject(PdfSheetWriter.pageId(pageIndex) - 1);
+        this.write("<< /Length " + this.compressed.size() + " /Filter /FlateDecode >>\nstream\n");
+        this.compressed.writeTo(this.out);
+        this.write("\nendstream\nendobj\n");
+
+        // 页面
+        this.beginObject(PdfSheetWriter.pageId(pageIndex));
+        this.write("<< /Type /Page /Parent " + PAGES_ID + " 0 R /Resources << >> /Contents " + (PdfSheetWriter.pageId(pageIndex) - 1) + " 0 R >>\nendobj\n");
+
+        this.page.reset();
+        this.labelsInPage = 0;
+        this.pageCount++;
+    }
+
+    /**
+     * 记录对象的位置，并写出对象的开头
+     * @param id 对象编号
+     * @throws IOException 写出失败
+     */
+    private void beginObject(int id) throws IOException {
+        if (id >= this.offsets.length) {
+            this.offsets = Arrays.copyOf(this.offsets, Math.max(id + 1, this.offsets.length * 2));
+        }
+        this.offsets[id] = this.out.count;
+        this.write(id + " 0 obj\n");
+    }
+
+    /**
+     * 写出 ASCII 字符串
+     * @param str 字符串
+     * @throws IOException 写出失败
+     */
+    private void write(String str) throws IOException {
+        this.out.write(str.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 获取页面的对象编号
+     * @param pageIndex 页面的下标
+     * @return 页面的对象编号
+     */
+    private static int pageId(int pageIndex) {
+        return 4 + 2 * pageIndex;
+    }
+
+    /**
+     * 将颜色转换为 PDF 中设置填充色的操作符
+     * @param color 颜色(RGB)
+     * @return 设置填充色的操作符
+     */
+    private static String color(int color) {
+        return PdfSheetWriter.number(((color >> 16) & 0xFF) / 255f) + " "
+                + PdfSheetWriter.number(((color >> 8) & 0xFF) / 255f) + " "
+                + PdfSheetWriter.number((color & 0xFF) / 255f) + " rg";
+    }
+
+    /**
+     * 将数字转换为 PDF 中的格式，最多保留 4 位小数
+     * @param value 数字
+     * @return PDF 中的数字
+     */
+    private static String number(float value) {
+        if (value == Math.rint(value)) {
+            return Long.toString((long) value);
+        }
+        String str = String.format(Locale.ROOT, "%.4f", value);
+        int end = str.length();
+        while (str.charAt(end - 1) == '0') end--;
+        return str.substring(0, end);
+    }
+
+    /**
+     * 记录已经写出的字节数的输出流，用于生成交叉引用表
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        /**
+         * 已经写出的字节数
+         */
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+
+    /**
+     * PDF 标签页写出器的 Builder
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class PdfSheetWriterBuilder {
+        /**
+         * 页面宽度(点)
+         */
+        private float pageWidth = A4_WIDTH;
+        /**
+         * 页面高度(点)
+         */
+        private float pageHeight = A4_HEIGHT;
+        /**
+         * 每页的列数
+         */
+        private int columns = 3;
+        /**
+         * 每页的行数
+         */
+        private int rows = 4;
+        /**
+         * 页边距(点)
+         */
+        private float margin = 36;
+        /**
+         * 标签之间的间距(点)
+         */
+        private float gap = 12;
+        /**
+         * 前景色(RGB)
+         */
+        private int foregroundColor = 0x00000000;
+        /**
+         * 背景色(RGB)，为 null 时不绘制背景
+         */
+        private Integer backgroundColor = null;
+
+        /**
+         * 设置页面大小，默认为 A4
+         * @param width 页面宽度(点，1/72 英寸)
+         * @param height 页面高度(点，1/72 英寸)
+         * @return 自身实例，方便链式调用
+         */
+        public PdfSheetWriterBuilder pageSize(float width, float height) {
+            if (width <= 0 || height <= 0) throw Lang.makeThrow("page size <= 0");
+            this.pageWidth = width;
+            this.pageHeight = height;
+            return this;
+        }
+
+        /**
+         * 设置每页的网格，默认为 3 列 4 行
+         * @param columns 每页的列数
+         * @param rows 每页的行数
+         * @return 自身实例，方便链式调用
+         */
+        public PdfSheetWriterBuilder grid(int columns, int rows) {
+            if (columns < 1 || rows < 1) throw Lang.makeThrow("columns < 1 || rows < 1");
+            this.columns = columns;
+            this.rows = rows;
+            return this;
+        }
+
+        /**
+         * 设置页边距，默认为 36 点(0.5 英寸)
+         * @param margin 页边距(点)
+         * @return 自身实例，方便链式调用
+         */
+        public PdfSheetWriterBuilder margin(float margin) {
+            if (margin < 0) throw Lang.makeThrow("margin < 0");
+            this.margin = margin;
+            return this;
+        }
+
+        /**
+         * 设置标签之间的间距，默认为 12 点
+         * @param gap 标签之间的间距(点)
+         * @return 自身实例，方便链式调用
+         */
+        public PdfSheetWriterBuilder gap(float gap) {
+            if (gap < 0) throw Lang.makeThrow("gap < 0");
+            this.gap = gap;
+            return this;
+        }
+
+        /**
+         * 设置前景色
+         * @param r 红色的量(0 ~ 255)
+         * @param g 绿色的量(0 ~ 255)
+         * @param b 蓝色的量(0 ~ 255)
+         * @return 自身实例，方便链式调用
+         */
+        public PdfSheetWriterBuilder foregroundColor(int r, int g, int b) {
+            this.foregroundColor = ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
+            return this;
+        }
+
+        /**
+         * 设置背景色，默认不绘制背景(即纸张的颜色)
+         * @param r 红色的量(0 ~ 255)
+         * @param g 绿色的量(0 ~ 255)
+         * @param b 蓝色的量(0 ~ 255)
+         * @return 自身实例，方便链式调用
+         */
+        public PdfSheetWriterBuilder backgroundColor(int r, int g, int b) {
+            this.backgroundColor = ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
+            return this;
+        }
+
+        /**
+         * 构建 PDF 标签页写出器，并写出文件头
+         * @param out 输出流，写出时不会进行缓冲，建议传入带缓冲的输出流
+         * @return 构建结果
+         */
+        public PdfSheetWriter build(@NonNull OutputStream out) {
+            float usableWidth = this.pageWidth - 2 * this.margin - (this.columns - 1) * this.gap;
+            float usableHeight = this.pageHeight - 2 * this.margin - (this.rows - 1) * this.gap;
+            if (usableWidth <= 0 || usableHeight <= 0) {
+                throw Lang.makeThrow("页面中放不下 %d * %d 个标签", this.columns, this.rows);
+            }
+
+            return Lang.wrapCode(() -> new PdfSheetWriter(this, out));
+        }
+    }
+}
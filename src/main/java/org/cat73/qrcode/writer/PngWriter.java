@@ -0,0 +1,458 @@
+package org.cat73.qrcode.writer;
+
+import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
+import org.cat73.qrcode.util.Images;
+import org.cat73.qrcode.util.Lang;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 不依赖 ImageIO 的 PNG 编码器<br>
+ * 纯色样式可以直接从填充矩阵输出 1 位的灰度或双色调色板 PNG，其他图片输出为 24 位(或带 Alpha 的 32 位)真彩色 PNG<br>
+ * 实例不可变且线程安全
+ */
+public final class PngWriter {
+    /**
+     * PNG 文件头
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    /**
+     * IDAT 块的最大长度，超过时会拆分为多个 IDAT 块
+     */
+    private static final int MAX_IDAT_LENGTH = 64 * 1024;
+
+    /**
+     * 默认的实例
+     */
+    public static final PngWriter DEFAULT = new PngWriter(Deflater.DEFAULT_COMPRESSION, Filter.UP);
+
+    /**
+     * 行过滤策略
+     */
+    public enum Filter {
+        /**
+         * 不过滤
+         */
+        NONE,
+        /**
+         * 与上一行做差，二维码中相邻的行通常完全相同，压缩效果最好
+         */
+        UP,
+        /**
+         * 对每一行分别尝试所有过滤方式，选择绝对值之和最小的(PNG 规范推荐的启发式策略)，速度较慢
+         */
+        ADAPTIVE
+    }
+
+    /**
+     * 压缩级别(0 ~ 9)，-1 为默认级别
+     */
+    private final int level;
+    /**
+     * 行过滤策略
+     */
+    private final Filter filter;
+
+    /**
+     * 构造一个 PNG 编码器
+     * @param level 压缩级别(0 ~ 9)，-1 为默认级别
+     * @param filter 行过滤策略
+     */
+    public PngWriter(int level, @NonNull Filter filter) {
+        if (level < -1 || level > 9) throw Lang.makeThrow("level: %d", level);
+        this.level = level;
+        this.filter = filter;
+    }
+
+    /**
+     * 获取压缩级别
+     * @return 压缩级别(0 ~ 9)，-1 为默认级别
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * 获取行过滤策略
+     * @return 行过滤策略
+     */
+    public Filter getFilter() {
+        return this.filter;
+    }
+
+    /**
+     * 直接从填充矩阵写出纯色的二维码图片，不会关闭输出流<br>
+     * 前景色与背景色为纯黑与纯白时输出 1 位灰度图，否则输出 1 位双色调色板图
+     * @param matrix 填充矩阵
+     * @param blockSize 块大小(像素)
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param out 输出流
+     * @throws IOException 写出失败
+     */
+    public void write(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor, @NonNull OutputStream out) throws IOException {
+        if (blockSize < 1) throw Lang.makeThrow("blockSize < 1");
+
+        int fg = foregroundColor & 0x00FFFFFF;
+        int bg = backgroundColor & 0x00FFFFFF;
+        int width = matrix.getWidth();
+        int imgWidth = width * blockSize;
+
+        // 1 位图中，位为 1 的像素的颜色
+        boolean gray = (fg == 0x000000 && bg == 0xFFFFFF) || (fg == 0xFFFFFF && bg == 0x000000);
+        boolean darkIsOne = !gray || fg == 0xFFFFFF;
+
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.write(SIGNATURE);
+        this.writeHeader(dos, imgWidth, imgWidth, 1, gray ? 0 : 3);
+        if (!gray) {
+            // 调色板，0 为背景色，1 为前景色
+            byte[] plte = {
+                    (byte) (bg >> 16), (byte) (bg >> 8), (byte) bg,
+                    (byte) (fg >> 16), (byte) (fg >> 8), (byte) fg
+            };
+            this.writeChunk(dos, "PLTE", plte, plte.length);
+        }
+
+        // 每行像素的数据，第一个字节为过滤方式
+        int rowBytes = (imgWidth + 7) >>> 3;
+        byte[] raw = new byte[rowBytes];
+        byte[] prev = new byte[rowBytes];
+        byte[] filtered = new byte[rowBytes + 1];
+        byte[] zeroRow = new byte[rowBytes + 1]; // UP 过滤时，与上一行相同的行
+        zeroRow[0] = 2;
+
+        try (IdatOutputStream idat = new IdatOutputStream(dos, this);
+             DeflaterOutputStream deflater = new DeflaterOutputStream(idat, idat.deflater, 8192)) {
+            for (int y = 0; y < width; y++) {
+                // 生成一行像素
+                Arrays.fill(raw, (byte) (darkIsOne ? 0x00 : 0xFF));
+                matrix.forEachRun(y, (yy, start, end) -> PngWriter.setBits(raw, start * blockSize, end * blockSize, darkIsOne));
+
+                for (int i = 0; i < blockSize; i++) {
+                    if (i > 0 && this.filter != Filter.NONE) {
+                        // 同一行块中的其余行与上一行完全相同
+                        deflater.write(zeroRow);
+                    } else {
+                        this.filterRow(raw, (y == 0 && i == 0) ? null : prev, 1, filtered);
+                        deflater.write(filtered);
+                    }
+                }
+                System.arraycopy(raw, 0, prev, 0, rowBytes);
+            }
+        }
+
+        this.writeChunk(dos, "IEND", new byte[0], 0);
+        dos.flush();
+    }
+
+    /**
+     * 写出任意图片，不会关闭输出流<br>
+     * 不透明的图片输出为 24 位真彩色，否则输出为 32 位带 Alpha 的真彩色
+     * @param img 图片
+     * @param out 输出流
+     * @throws IOException 写出失败
+     */
+    public void write(@NonNull BufferedImage img, @NonNull OutputStream out) throws IOException {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        boolean alpha = img.getColorModel().hasAlpha();
+        int bpp = alpha ? 4 : 3;
+
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.write(SIGNATURE);
+        this.writeHeader(dos, width, height, 8, alpha ? 6 : 2);
+
+        // INT 类型的图片直接读取像素数组，按行间隔和偏移定位，子图片同样适用
+        int[] pixels = Images.intPixels(img);
+        int pixelOffset = pixels == null ? 0 : Images.pixelOffset(img);
+        int stride = pixels == null ? 0 : Images.scanlineStride(img);
+        int[] argb = pixels == null ? new int[width] : null;
+
+        int rowBytes = width * bpp;
+        byte[] raw = new byte[rowBytes];
+        byte[] prev = new byte[rowBytes];
+        byte[] filtered = new byte[rowBytes + 1];
+
+        try (IdatOutputStream idat = new IdatOutputStream(dos, this);
+             DeflaterOutputStream deflater = new DeflaterOutputStream(idat, idat.deflater, 8192)) {
+            for (int y = 0; y < height; y++) {
+                // 取出一行像素
+                int offset = 0;
+                if (pixels == null) {
+                    img.getRGB(0, y, width, 1, argb, 0, width);
+                }
+                int[] src = pixels == null ? argb : pixels;
+                int srcStart = pixels == null ? 0 : pixelOffset + y * stride;
+                for (int x = 0; x < width; x++) {
+                    int c = src[srcStart + x];
+                    raw[offset++] = (byte) (c >> 16);
+                    raw[offset++] = (byte) (c >> 8);
+                    raw[offset++] = (byte) c;
+                    if (alpha) raw[offset++] = (byte) (c >>> 24);
+                }
+
+                this.filterRow(raw, y == 0 ? null : prev, bpp, filtered);
+                deflater.write(filtered);
+
+                byte[] tmp = prev;
+                prev = raw;
+                raw = tmp;
+            }
+        }
+
+        this.writeChunk(dos, "IEND", new byte[0], 0);
+        dos.flush();
+    }
+
+    /**
+     * 将一行中指定范围内的位设置为指定值
+     * @param row 行数据
+     * @param start 开始的像素(包含)
+     * @param end 结束的像素(不包含)
+     * @param value 设置的值
+     */
+    private static void setBits(byte[] row, int start, int end, boolean value) {
+        for (int x = start; x < end; ) {
+            int index = x >>> 3;
+            int bit = x & 7;
+            if (bit == 0 && end - x >= 8) {
+                // 整个字节
+                int count = (end - x) >>> 3;
+                Arrays.fill(row, index, index + count, (byte) (value ? 0xFF : 0x00));
+                x += count << 3;
+                continue;
+            }
+
+            // PNG 中每个字节的最高位为最左侧的像素
+            int mask = 0x80 >>> bit;
+            if (value) {
+                row[index] |= mask;
+            } else {
+                row[index] &= ~mask;
+            }
+            x++;
+        }
+    }
+
+    /**
+     * 对一行数据进行过滤
+     * @param raw 原始数据
+     * @param prev 上一行的原始数据，第一行时为 null
+     * @param bpp 每个像素的字节数，不足一字节时为 1
+     * @param out 过滤结果，第一个字节为过滤方式
+     */
+    private void filterRow(byte[] raw, byte[] prev, int bpp, byte[] out) {
+        switch (this.filter) {
+            case NONE:
+                PngWriter.filter(0, raw, prev, bpp, out);
+                break;
+            case UP:
+                PngWriter.filter(prev == null ? 0 : 2, raw, prev, bpp, out);
+                break;
+            case ADAPTIVE:
+                // 选择绝对值之和最小的过滤方式
+                int best = 0;
+                long bestSum = Long.MAX_VALUE;
+                for (int type = 0; type <= 4; type++) {
+                    PngWriter.filter(type, raw, prev, bpp, out);
+                    long sum = 0;
+                    for (int i = 1; i < out.length; i++) {
+                        sum += Math.abs((int) out[i]);
+                    }
+                    if (sum < bestSum) {
+                        bestSum = sum;
+                        best = type;
+                    }
+                }
+                PngWriter.filter(best, raw, prev, bpp, out);
+                break;
+            default:
+                throw Lang.impossible();
+        }
+    }
+
+    /**
+     * 使用指定的过滤方式过滤一行数据
+     * @param type 过滤方式(0 ~ 4)
+     * @param raw 原始数据
+     * @param prev 上一行的原始数据，第一行时为 null
+     * @param bpp 每个像素的字节数，不足一字节时为 1
+     * @param out 过滤结果，第一个字节为过滤方式
+     */
+    private static void filter(int type, byte[] raw, byte[] prev, int bpp, byte[] out) {
+        out[0] = (byte) type;
+        for (int i = 0; i < raw.length; i++) {
+            int x = raw[i] & 0xFF;
+            int a = i >= bpp ? raw[i - bpp] & 0xFF : 0;
+            int b = prev != null ? prev[i] & 0xFF : 0;
+            int c = (i >= bpp && prev != null) ? prev[i - bpp] & 0xFF : 0;
+            int predictor;
+            switch (type) {
+                case 0: predictor = 0; break;
+                case 1: predictor = a; break;
+                case 2: predictor = b; break;
+                case 3: predictor = (a + b) >>> 1; break;
+                case 4: predictor = PngWriter.paeth(a, b, c); break;
+                default: throw Lang.impossible();
+            }
+            out[i + 1] = (byte) (x - predictor);
+        }
+    }
+
+    /**
+     * Paeth 预测
+     * @param a 左侧的值
+     * @param b 上方的值
+     * @param c 左上方的值
+     * @return 预测值
+     */
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        if (pb <= pc) return b;
+        return c;
+    }
+
+    /**
+     * 写出 IHDR 块
+     * @param dos 输出流
+     * @param width 宽度
+     * @param height 高度
+     * @param bitDepth 位深度
+     * @param colorType 颜色类型
+     * @throws IOException 写出失败
+     */
+    private void writeHeader(DataOutputStream dos, int width, int height, int bitDepth, int colorType) throws IOException {
+        byte[] ihdr = new byte[13];
+        PngWriter.putInt(ihdr, 0, width);
+        PngWriter.putInt(ihdr, 4, height);
+        ihdr[8] = (byte) bitDepth;
+        ihdr[9] = (byte) colorType;
+        ihdr[10] = 0; // 压缩方式: deflate
+        ihdr[11] = 0; // 过滤方式: 自适应
+        ihdr[12] = 0; // 无隔行扫描
+        this.writeChunk(dos, "IHDR", ihdr, ihdr.length);
+    }
+
+    /**
+     * 写出一个块
+     * @param dos 输出流
+     * @param type 块类型
+     * @param data 块数据
+     * @param length 块数据的长度
+     * @throws IOException 写出失败
+     */
+    private void writeChunk(DataOutputStream dos, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        dos.writeInt(length);
+        dos.write(typeBytes);
+        dos.write(data, 0, length);
+        dos.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * 将 int 以大端序写入数组
+     * @param arr 数组
+     * @param offset 开始的位置
+     * @param value 值
+     */
+    private static void putInt(byte[] arr, int offset, int value) {
+        arr[offset] = (byte) (value >>> 24);
+        arr[offset + 1] = (byte) (value >>> 16);
+        arr[offset + 2] = (byte) (value >>> 8);
+        arr[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 将压缩后的数据按块写出为 IDAT 的输出流，关闭时不会关闭下层的输出流
+     */
+    private static final class IdatOutputStream extends OutputStream {
+        /**
+         * 下层的输出流
+         */
+        private final DataOutputStream out;
+        /**
+         * 所属的 PNG 编码器
+         */
+        private final PngWriter writer;
+        /**
+         * 压缩器，关闭时释放
+         */
+        private final Deflater deflater;
+        /**
+         * 待写出的数据
+         */
+        private final byte[] buffer = new byte[MAX_IDAT_LENGTH];
+        /**
+         * 待写出的数据的长度
+         */
+        private int count = 0;
+
+        /**
+         * 构造一个 IDAT 输出流
+         * @param out 下层的输出流
+         * @param writer 所属的 PNG 编码器
+         */
+        private IdatOutputStream(DataOutputStream out, PngWriter writer) {
+            this.out = out;
+            this.writer = writer;
+            this.deflater = new Deflater(writer.level);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (this.count == this.buffer.length) {
+                this.flushChunk();
+            }
+            this.buffer[this.count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (this.count == this.buffer.length) {
+                    this.flushChunk();
+                }
+                int n = Math.min(len, this.buffer.length - this.count);
+                System.arraycopy(b, off, this.buffer, this.count, n);
+                this.count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * 将待写出的数据写出为一个 IDAT 块
+         * @throws IOException 写出失败
+         */
+        private void flushChunk() throws IOException {
+            if (this.count > 0) {
+                this.writer.writeChunk(this.out, "IDAT", this.buffer, this.count);
+                this.count = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.flushChunk();
+            this.deflater.end();
+        }
+    }
+}
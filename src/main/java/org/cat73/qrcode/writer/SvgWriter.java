@@ -0,0 +1,236 @@
+package org.cat73.qrcode.writer;
+
+import lombok.NonNull;
+import org.cat73.qrcode.matrix.QRMatrix;
+import org.cat73.qrcode.util.FastByteArrayOutputStream;
+import org.cat73.qrcode.util.Lang;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 直接从填充矩阵生成 SVG 矢量图<br>
+ * 相连的前景色块会被合并为一个多边形轮廓，整个二维码只输出一个 path 元素，
+ * 占用的内存只与块数有关，与输出的尺寸无关
+ */
+public final class SvgWriter {
+    private SvgWriter() {
+        throw new UnsupportedOperationException();
+    }
+
+    // **** 方向，同时也是顶点上出边的标记位 ****
+    /**
+     * 向右
+     */
+    private static final int EAST = 1;
+    /**
+     * 向下
+     */
+    private static final int SOUTH = 2;
+    /**
+     * 向左
+     */
+    private static final int WEST = 4;
+    /**
+     * 向上
+     */
+    private static final int NORTH = 8;
+
+    /**
+     * 写出 SVG 到字符输出流中，不会关闭输出流
+     * @param matrix 填充矩阵
+     * @param blockSize 块大小(像素)，用于 SVG 的宽高
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param logoImg Logo 图片，为 null 时不绘制 Logo
+     * @param logoSize Logo 图片大小(块数)
+     * @param out 字符输出流
+     * @throws IOException 写出失败
+     */
+    public static void write(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor,
+                             BufferedImage logoImg, int logoSize, @NonNull Writer out) throws IOException {
+        int width = matrix.getWidth();
+        int imgWidth = width * blockSize;
+
+        // 坐标以块为单位，通过 viewBox 缩放到实际大小
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"1.1\"");
+        out.write(" width=\"" + imgWidth + "\" height=\"" + imgWidth + "\" viewBox=\"0 0 " + width + " " + width + "\" shape-rendering=\"crispEdges\">\n");
+        out.write("<rect width=\"" + width + "\" height=\"" + width + "\" fill=\"" + SvgWriter.color(backgroundColor) + "\"/>\n");
+
+        out.write("<path fill=\"" + SvgWriter.color(foregroundColor) + "\" d=\"");
+        SvgWriter.writeOutline(matrix, out);
+        out.write("\"/>\n");
+
+        // Logo 以 PNG 的形式嵌入
+        if (logoImg != null) {
+            FastByteArrayOutputStream png = new FastByteArrayOutputStream();
+            PngWriter.DEFAULT.write(logoImg, png);
+            String pos = SvgWriter.number((width / 2.0) - (logoSize / 2.0));
+            out.write("<image x=\"" + pos + "\" y=\"" + pos + "\" width=\"" + logoSize + "\" height=\"" + logoSize + "\" preserveAspectRatio=\"none\" xlink:href=\"data:image/png;base64,");
+            out.write(Base64.getEncoder().encodeToString(png.toByteArray()));
+            out.write("\"/>\n");
+        }
+
+        out.write("</svg>\n");
+        out.flush();
+    }
+
+    /**
+     * 写出 SVG 到输出流中(UTF-8)，不会关闭输出流
+     * @param matrix 填充矩阵
+     * @param blockSize 块大小(像素)，用于 SVG 的宽高
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @param logoImg Logo 图片，为 null 时不绘制 Logo
+     * @param logoSize Logo 图片大小(块数)
+     * @param out 输出流
+     * @throws IOException 写出失败
+     */
+    public static void write(@NonNull QRMatrix matrix, int blockSize, int foregroundColor, int backgroundColor,
+                             BufferedImage logoImg, int logoSize, @NonNull OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        SvgWriter.write(matrix, blockSize, foregroundColor, backgroundColor, logoImg, logoSize, writer);
+    }
+
+    /**
+     * 追踪所有前景色区域的轮廓，写出为 path 的 d 属性<br>
+     * 轮廓的方向保证前景色总在前进方向的右侧，因此外轮廓与孔洞的方向相反，使用默认的 nonzero 填充规则即可正确显示孔洞
+     * @param matrix 填充矩阵
+     * @param out 字符输出流
+     * @throws IOException 写出失败
+     */
+    private static void writeOutline(QRMatrix matrix, Writer out) throws IOException {
+        int width = matrix.getWidth();
+        int stride = width + 1;
+
+        // 每个顶点上尚未使用的出边
+        byte[] edges = new byte[stride * stride];
+        for (int y = 0; y < width; y++) {
+            for (int x = matrix.nextDark(0, y); x < width; x = matrix.nextDark(x + 1, y)) {
+                if (y == 0 || !matrix.get(x, y - 1)) edges[y * stride + x] |= EAST; // 上边，从左上到右上
+                if (x == width - 1 || !matrix.get(x + 1, y)) edges[y * stride + x + 1] |= SOUTH; // 右边，从右上到右下
+                if (y == width - 1 || !matrix.get(x, y + 1)) edges[(y + 1) * stride + x + 1] |= WEST; // 下边，从右下到左下
+                if (x == 0 || !matrix.get(x - 1, y)) edges[(y + 1) * stride + x] |= NORTH; // 左边，从左下到左上
+            }
+        }
+
+        // 依次追踪每一个闭合的轮廓，每个轮廓都从它最左上的顶点开始
+        StringBuilder sb = new StringBuilder();
+        int lastX = 0;
+        int lastY = 0;
+        for (int start = 0; start < edges.length; start++) {
+            if (edges[start] == 0) continue;
+
+            // 闭合后当前点回到上一个轮廓的起点，使用相对坐标，数字更短
+            int x = start % stride;
+            int y = start / stride;
+            sb.setLength(0);
+            sb.append('m').append(x - lastX).append(' ').append(y - lastY);
+
+            int dir = 0;
+            int length = 0;
+            int cx = x;
+            int cy = y;
+            do {
+                int vertex = cy * stride + cx;
+                int next = SvgWriter.chooseEdge(edges[vertex], dir);
+                edges[vertex] &= ~next;
+
+                // 同方向的边合并为一条线段
+                if (next != dir) {
+                    SvgWriter.appendSegment(sb, dir, length);
+                    dir = next;
+                    length = 0;
+                }
+                length++;
+                switch (next) {
+                    case EAST: cx++; break;
+                    case SOUTH: cy++; break;
+                    case WEST: cx--; break;
+                    case NORTH: cy--; break;
+                    default: throw Lang.impossible();
+                }
+            } while (cx != x || cy != y);
+            // 最后一段会被 z 闭合，无需输出
+            sb.append('z');
+            out.append(sb);
+
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    /**
+     * 选择下一条出边<br>
+     * 顶点上有两条出边时(两个前景色块对角相接)，优先向右转，这样对角相接的块会成为两个独立的轮廓
+     * @param available 顶点上尚未使用的出边
+     * @param dir 到达顶点时的方向，起点时为 0
+     * @return 选择的出边
+     */
+    private static int chooseEdge(int available, int dir) {
+        if (dir != 0) {
+            int right = SvgWriter.turnRight(dir);
+            if ((available & right) != 0) return right;
+            if ((available & dir) != 0) return dir;
+            int left = SvgWriter.turnLeft(dir);
+            if ((available & left) != 0) return left;
+        }
+        return Integer.lowestOneBit(available);
+    }
+
+    /**
+     * 向右转
+     * @param dir 当前的方向
+     * @return 向右转后的方向
+     */
+    private static int turnRight(int dir) {
+        return dir == NORTH ? EAST : dir << 1;
+    }
+
+    /**
+     * 向左转
+     * @param dir 当前的方向
+     * @return 向左转后的方向
+     */
+    private static int turnLeft(int dir) {
+        return dir == EAST ? NORTH : dir >>> 1;
+    }
+
+    /**
+     * 输出一条线段
+     * @param sb 输出的目标
+     * @param dir 线段的方向，为 0 时不输出
+     * @param length 线段的长度
+     */
+    private static void appendSegment(StringBuilder sb, int dir, int length) {
+        switch (dir) {
+            case 0: break;
+            case EAST: sb.append('h').append(length); break;
+            case SOUTH: sb.append('v').append(length); break;
+            case WEST: sb.append('h').append(-length); break;
+            case NORTH: sb.append('v').append(-length); break;
+            default: throw Lang.impossible();
+        }
+    }
+
+    /**
+     * 将颜色转换为 SVG 中的格式
+     * @param color 颜色(RGB)
+     * @return SVG 中的颜色，如 #FF0000
+     */
+    private static String color(int color) {
+        return String.format("#%06X", color & 0x00FFFFFF);
+    }
+
+    /**
+     * 将数字转换为 SVG 中的格式，整数不输出小数部分
+     * @param value 数字
+     * @return SVG 中的数字
+     */
+    private static String number(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
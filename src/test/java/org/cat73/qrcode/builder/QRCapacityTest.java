@@ -0,0 +1,108 @@
+package org.cat73.qrcode.builder;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * QRCapacity 的测试，计算出的最小 QRVersion 应与 zxing Encoder 实际编码时选择的 QRVersion 相同
+ */
+public class QRCapacityTest {
+    /**
+     * ALPHANUMERIC 模式的字符
+     */
+    private static final String ALPHANUMERIC_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+    /**
+     * Shift_JIS 的双字节汉字
+     */
+    private static final String KANJI_CHARS = "日本語漢字東京点茗";
+
+    @Test
+    public void numeric() {
+        QRCapacityTest.assertSameAsEncoder("0123456789", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void alphanumeric() {
+        QRCapacityTest.assertSameAsEncoder(ALPHANUMERIC_CHARS, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void byteUtf8() {
+        QRCapacityTest.assertSameAsEncoder("abc二维码é", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void byteIso88591() {
+        QRCapacityTest.assertSameAsEncoder("abcxyzéü", StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void kanji() {
+        QRCapacityTest.assertSameAsEncoder(KANJI_CHARS, Charset.forName("Shift_JIS"));
+    }
+
+    @Test
+    public void fitToStaysWithinPixels() {
+        Random random = new Random(24);
+        for (int i = 0; i < 50; i++) {
+            // 120 像素、块大小 2 像素时最大为 QRVersion 10，足以放下 100 个字符
+            int pixels = 120 + random.nextInt(500);
+            String content = QRCapacityTest.randomContent(random, "abcdefghijklmnopqrstuvwxyz", 1 + random.nextInt(100));
+            BufferedImage img = new QRCodeBuilder(content).fitTo(pixels).toImg();
+            assertTrue(content.length() + " chars in " + pixels + "px: " + img.getWidth(), img.getWidth() <= pixels);
+        }
+    }
+
+    /**
+     * 用指定的字符随机生成各种长度的内容，确认每个容错级别下的最小 QRVersion 都与 Encoder 相同
+     * @param chars 可用的字符
+     * @param charset 内容编码
+     */
+    private static void assertSameAsEncoder(String chars, Charset charset) {
+        Random random = new Random(chars.hashCode());
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.CHARACTER_SET, charset.name());
+
+        for (int length = 1; length <= 8000; length += 1 + length / 8) {
+            String content = QRCapacityTest.randomContent(random, chars, length);
+            QRCapacity capacity = QRCapacity.of(content, charset);
+            for (ErrorCorrectionLevel level : ErrorCorrectionLevel.values()) {
+                int expected;
+                try {
+                    expected = Encoder.encode(content, level, hints).getVersion().getVersionNumber();
+                } catch (WriterException e) {
+                    expected = -1;
+                }
+                assertEquals(length + " chars, " + level, expected, capacity.minVersion(level));
+            }
+        }
+    }
+
+    /**
+     * 随机生成内容
+     * @param random 随机数生成器
+     * @param chars 可用的字符
+     * @param length 长度
+     * @return 内容
+     */
+    private static String randomContent(Random random, String chars, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package org.cat73.qrcode.builder;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 结构化追加序列的测试，用 zxing 的 QRCodeReader 解析每一张图片，按序号拼接后应与原内容相同
+ */
+public class StructuredAppendTest {
+    @Test
+    public void numeric() throws ReaderException {
+        StructuredAppendTest.assertRoundTrip(StructuredAppendTest.randomContent("0123456789", 12000));
+    }
+
+    @Test
+    public void alphanumeric() throws ReaderException {
+        StructuredAppendTest.assertRoundTrip(StructuredAppendTest.randomContent("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:", 8000));
+    }
+
+    @Test
+    public void byteAscii() throws ReaderException {
+        StructuredAppendTest.assertRoundTrip(StructuredAppendTest.randomContent("abcdefghijklmnopqrstuvwxyz", 5000));
+    }
+
+    @Test
+    public void byteMultiByte() throws ReaderException {
+        // 多字节的字符不能被拆到两个二维码中
+        StructuredAppendTest.assertRoundTrip(StructuredAppendTest.randomContent("二维码结构化追加a", 3000));
+    }
+
+    @Test
+    public void fixedVersion() throws ReaderException {
+        String content = StructuredAppendTest.randomContent("abcdefghijklmnopqrstuvwxyz", 600);
+        List<QRSymbol> parts = new QRCodeBuilder(content).qrVersion(5).encodeParts();
+        assertTrue(parts.size() > 1);
+        for (QRSymbol part : parts) {
+            assertEquals(5, part.getVersion());
+        }
+        StructuredAppendTest.assertRoundTrip(new QRCodeBuilder(content).qrVersion(5).toImgs(), content);
+    }
+
+    @Test
+    public void singleSymbolWhenFits() throws ReaderException {
+        List<BufferedImage> imgs = new QRCodeBuilder("short content").toImgs();
+        assertEquals(1, imgs.size());
+        Result result = StructuredAppendTest.decode(imgs.get(0));
+        assertEquals("short content", result.getText());
+        assertFalse(result.getResultMetadata() != null && result.getResultMetadata().containsKey(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE));
+    }
+
+    @Test
+    public void tooLong() {
+        String content = StructuredAppendTest.randomContent("abcdefghijklmnopqrstuvwxyz", 2953 * 16 + 1);
+        try {
+            new QRCodeBuilder(content).lowErrorCorrection().encodeParts();
+            fail("内容超过 16 个二维码时应抛出异常");
+        } catch (RuntimeException e) {
+            // 预期的异常
+        }
+    }
+
+    @Test
+    public void sheetKeepsQuietZone() {
+        String content = StructuredAppendTest.randomContent("abcdefghijklmnopqrstuvwxyz", 5000);
+        QRCodeBuilder builder = new QRCodeBuilder(content).borderBlock(0).blockSize(2);
+        List<BufferedImage> imgs = builder.toImgs();
+        BufferedImage sheet = builder.toSheetImg(imgs.size());
+
+        // 一行排列，相邻两个二维码之间间隔 4 个块
+        int width = imgs.get(0).getWidth();
+        assertEquals(width * imgs.size() + 4 * 2 * (imgs.size() - 1), sheet.getWidth());
+        assertEquals(width, sheet.getHeight());
+        for (int x = width; x < width + 4 * 2; x++) {
+            for (int y = 0; y < width; y++) {
+                assertEquals(0xFFFFFFFF, sheet.getRGB(x, y));
+            }
+        }
+    }
+
+    /**
+     * 拆分并输出内容，确认每一张图片都能识别，且序号、总数、校验值正确，拼接后与原内容相同
+     * @param content 内容
+     * @throws ReaderException 图片无法识别
+     */
+    private static void assertRoundTrip(String content) throws ReaderException {
+        List<BufferedImage> imgs = new QRCodeBuilder(content).toImgs();
+        assertTrue(imgs.size() > 1);
+        StructuredAppendTest.assertRoundTrip(imgs, content);
+    }
+
+    /**
+     * 确认每一张图片都能识别，且序号、总数、校验值正确，拼接后与原内容相同
+     * @param imgs 按序号排列的图片
+     * @param content 内容
+     * @throws ReaderException 图片无法识别
+     */
+    private static void assertRoundTrip(List<BufferedImage> imgs, String content) throws ReaderException {
+        int parity = 0;
+        for (byte b : content.getBytes(StandardCharsets.UTF_8)) {
+            parity ^= b;
+        }
+        parity &= 0xFF;
+
+        int total = imgs.size();
+        StringBuilder sb = new StringBuilder(content.length());
+        for (int i = 0; i < total; i++) {
+            Result result = StructuredAppendTest.decode(imgs.get(i));
+            Map<ResultMetadataType, Object> metadata = result.getResultMetadata();
+            assertNotNull(metadata);
+            // 序号在高 4 位，总数 - 1 在低 4 位
+            assertEquals((i << 4) | (total - 1), metadata.get(ResultMetadataType.STRUCTURED_APPEND_SEQUENCE));
+            assertEquals(parity, metadata.get(ResultMetadataType.STRUCTURED_APPEND_PARITY));
+            sb.append(result.getText());
+        }
+        assertEquals(content, sb.toString());
+    }
+
+    /**
+     * 使用 zxing 的 QRCodeReader 解析图片<br>
+     * 生成的图片没有变形，使用 PURE_BARCODE 模式，zxing 的定位算法对大尺寸 QRVersion 的无噪声图片并不稳定
+     * @param img 图片
+     * @return 解析结果
+     * @throws ReaderException 图片无法识别
+     */
+    private static Result decode(BufferedImage img) throws ReaderException {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int[] pixels = img.getRGB(0, 0, width, height, null, 0, width);
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name());
+        hints.put(DecodeHintType.PURE_BARCODE, Boolean.TRUE);
+        return new QRCodeReader().decode(bitmap, hints);
+    }
+
+    /**
+     * 随机生成内容
+     * @param chars 可用的字符
+     * @param length 长度
+     * @return 内容
+     */
+    private static String randomContent(String chars, int length) {
+        Random random = new Random(chars.hashCode() ^ length);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package org.cat73.qrcode.writer;
+
+import org.cat73.qrcode.builder.QRCodeBuilder;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * PngWriter 的测试，写出的 PNG 经 ImageIO 读回后，每个像素都应与原图相同<br>
+ * 直接从填充矩阵写出的 1 位 PNG，读回后应与 DefaultQRCodeStyle 绘制的图片相同
+ */
+public class PngWriterTest {
+    /**
+     * 测试用图片的宽度
+     */
+    private static final int WIDTH = 37;
+    /**
+     * 测试用图片的高度
+     */
+    private static final int HEIGHT = 23;
+
+    @Test
+    public void intRgb() throws IOException {
+        PngWriterTest.assertRoundTrip(PngWriterTest.randomImage(BufferedImage.TYPE_INT_RGB, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void intArgb() throws IOException {
+        PngWriterTest.assertRoundTrip(PngWriterTest.randomImage(BufferedImage.TYPE_INT_ARGB, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void threeByteBgr() throws IOException {
+        PngWriterTest.assertRoundTrip(PngWriterTest.randomImage(BufferedImage.TYPE_3BYTE_BGR, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void intRgbSubimage() throws IOException {
+        // 子图片的像素数组带有偏移，行间隔也大于宽度
+        BufferedImage img = PngWriterTest.randomImage(BufferedImage.TYPE_INT_RGB, WIDTH + 20, HEIGHT + 10);
+        PngWriterTest.assertRoundTrip(img.getSubimage(7, 5, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void intArgbSubimage() throws IOException {
+        BufferedImage img = PngWriterTest.randomImage(BufferedImage.TYPE_INT_ARGB, WIDTH + 20, HEIGHT + 10);
+        PngWriterTest.assertRoundTrip(img.getSubimage(13, 3, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void nestedSubimage() throws IOException {
+        BufferedImage img = PngWriterTest.randomImage(BufferedImage.TYPE_INT_RGB, WIDTH + 20, HEIGHT + 10);
+        PngWriterTest.assertRoundTrip(img.getSubimage(4, 2, WIDTH + 10, HEIGHT + 5).getSubimage(3, 1, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void allFilters() throws IOException {
+        BufferedImage img = PngWriterTest.randomImage(BufferedImage.TYPE_INT_RGB, WIDTH + 20, HEIGHT + 10).getSubimage(5, 5, WIDTH, HEIGHT);
+        for (PngWriter.Filter filter : PngWriter.Filter.values()) {
+            PngWriterTest.assertRoundTrip(new PngWriter(9, filter), img);
+        }
+    }
+
+    @Test
+    public void matrixBlackOnWhite() throws IOException {
+        PngWriterTest.assertMatrixRoundTrip(0x000000, 0xFFFFFF);
+    }
+
+    @Test
+    public void matrixInverted() throws IOException {
+        PngWriterTest.assertMatrixRoundTrip(0xFFFFFF, 0x000000);
+    }
+
+    @Test
+    public void matrixPalette() throws IOException {
+        PngWriterTest.assertMatrixRoundTrip(0x1E3A8A, 0xFDE68A);
+        PngWriterTest.assertMatrixRoundTrip(0xC0392B, 0x000000);
+    }
+
+    /**
+     * 使用各种块大小、边框和行过滤策略，从填充矩阵写出 PNG，确认读回的每个像素都与 DefaultQRCodeStyle 绘制的图片相同
+     * @param foregroundColor 前景色(RGB)
+     * @param backgroundColor 背景色(RGB)
+     * @throws IOException 写出或读取失败
+     */
+    private static void assertMatrixRoundTrip(int foregroundColor, int backgroundColor) throws IOException {
+        for (int blockSize : new int[]{1, 2, 3, 5, 8, 13}) {
+            for (int borderBlock : new int[]{0, 1, 4}) {
+                QRCodeBuilder builder = new QRCodeBuilder("PngWriterTest " + blockSize + "/" + borderBlock)
+                        .blockSize(blockSize)
+                        .borderBlock(borderBlock)
+                        .foregroundColor((foregroundColor >> 16) & 0xFF, (foregroundColor >> 8) & 0xFF, foregroundColor & 0xFF)
+                        .backgroundColor((backgroundColor >> 16) & 0xFF, (backgroundColor >> 8) & 0xFF, backgroundColor & 0xFF);
+                BufferedImage expected = builder.toImg();
+                for (PngWriter.Filter filter : PngWriter.Filter.values()) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    new PngWriter(9, filter).write(builder.toMatrix(), blockSize, foregroundColor, backgroundColor, out);
+                    PngWriterTest.assertSamePixels(expected, ImageIO.read(new ByteArrayInputStream(out.toByteArray())));
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成每个像素颜色随机的图片
+     * @param type 图片类型
+     * @param width 宽度
+     * @param height 高度
+     * @return 图片
+     */
+    private static BufferedImage randomImage(int type, int width, int height) {
+        Random random = new Random(type * 31L + width);
+        BufferedImage img = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, random.nextInt());
+            }
+        }
+        return img;
+    }
+
+    /**
+     * 使用默认的 PngWriter 写出图片，确认读回的每个像素都与原图相同
+     * @param img 图片
+     * @throws IOException 写出或读取失败
+     */
+    private static void assertRoundTrip(BufferedImage img) throws IOException {
+        PngWriterTest.assertRoundTrip(PngWriter.DEFAULT, img);
+    }
+
+    /**
+     * 写出图片，确认读回的每个像素都与原图相同
+     * @param writer PNG 编码器
+     * @param img 图片
+     * @throws IOException 写出或读取失败
+     */
+    private static void assertRoundTrip(PngWriter writer, BufferedImage img) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(img, out);
+        PngWriterTest.assertSamePixels(img, ImageIO.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    /**
+     * 确认读回的图片与原图尺寸相同，且每个像素都相同
+     * @param img 原图
+     * @param read 读回的图片
+     */
+    private static void assertSamePixels(BufferedImage img, BufferedImage read) {
+        assertNotNull(read);
+        assertEquals(img.getWidth(), read.getWidth());
+        assertEquals(img.getHeight(), read.getHeight());
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                assertEquals("(" + x + ", " + y + ")", img.getRGB(x, y), read.getRGB(x, y));
+            }
+        }
+    }
+}